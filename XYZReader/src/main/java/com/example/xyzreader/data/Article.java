@@ -1,15 +1,56 @@
 package com.example.xyzreader.data;
 
+import android.database.Cursor;
+
 public class Article {
 
+    /** Color of an article whose photo has no swatch, or has not been analyzed yet. */
+    public static final int NO_COLOR = 0;
+
+    private long id;
     private String imagePath;
+    private String thumbUrl;
     private float aspectRatio;
+    private int mutedColor;
     private String title;
-    private String byline;
-    private String[] articleBody;
+    private String author;
+    private long publishedDate;
+    // Never changed once built, so a cached article can be shared between threads.
+    private String[] paragraphs;
+
+    /**
+     * Builds an article from a row loaded with {@link ArticleLoader.Query#PROJECTION} and the
+     * rows of its paragraphs, loaded with {@link ArticleLoader.ParagraphQuery#PROJECTION}. Reads
+     * every paragraph, so it must not be called on the main thread.
+     */
+    public static Article fromCursors(Cursor item, Cursor paragraphCursor) {
+        Article article = new Article();
+        article.setId(item.getLong(ArticleLoader.Query._ID));
+        article.setTitle(item.getString(ArticleLoader.Query.TITLE));
+        article.setAuthor(item.getString(ArticleLoader.Query.AUTHOR));
+        article.setPublishedDate(item.getLong(ArticleLoader.Query.PUBLISHED_DATE));
+        article.setImagePath(item.getString(ArticleLoader.Query.PHOTO_URL));
+        article.setThumbUrl(item.getString(ArticleLoader.Query.THUMB_URL));
+        article.setAspectRatio(item.getFloat(ArticleLoader.Query.ASPECT_RATIO));
+        article.setMutedColor(item.isNull(ArticleLoader.Query.MUTED_COLOR)
+                ? NO_COLOR : item.getInt(ArticleLoader.Query.MUTED_COLOR));
 
-    public String[] getArticleBody() {
-        return articleBody;
+        final String[] paragraphs = new String[paragraphCursor.getCount()];
+        paragraphCursor.moveToPosition(-1);
+        while (paragraphCursor.moveToNext()) {
+            paragraphs[paragraphCursor.getPosition()] =
+                    paragraphCursor.getString(ArticleLoader.ParagraphQuery.TEXT);
+        }
+        article.paragraphs = paragraphs;
+        return article;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
     }
 
     public float getAspectRatio() {
@@ -20,8 +61,15 @@ public class Article {
         this.aspectRatio = aspectRatio;
     }
 
-    public void setArticleBody(String[] articleBody) {
-        this.articleBody = articleBody;
+    /**
+     * Returns the muted color of the photo, or {@link #NO_COLOR}.
+     */
+    public int getMutedColor() {
+        return mutedColor;
+    }
+
+    public void setMutedColor(int mutedColor) {
+        this.mutedColor = mutedColor;
     }
 
     public String getImagePath() {
@@ -32,6 +80,14 @@ public class Article {
         this.imagePath = imagePath;
     }
 
+    public String getThumbUrl() {
+        return thumbUrl;
+    }
+
+    public void setThumbUrl(String thumbUrl) {
+        this.thumbUrl = thumbUrl;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -40,12 +96,28 @@ public class Article {
         this.title = title;
     }
 
-    public String getByline() {
-        return byline;
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public long getPublishedDate() {
+        return publishedDate;
+    }
+
+    public void setPublishedDate(long publishedDate) {
+        this.publishedDate = publishedDate;
+    }
+
+    public int getParagraphCount() {
+        return paragraphs.length;
     }
 
-    public void setByline(String byline) {
-        this.byline = byline;
+    public String getParagraph(int index) {
+        return paragraphs[index];
     }
 
 }
@@ -0,0 +1,182 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Process-wide cache of fully built {@link Article}s keyed by id, so a page seen before can be
+ * shown again without a query.
+ * <p>
+ * Entries are dropped as soon as the provider reports a change: a change to one article evicts
+ * that article, any other change evicts everything. Because a load can race a change, articles
+ * are put together with the {@link #getGeneration() generation} their load started at, and
+ * refused if a change has been seen since. Articles are immutable, so they are sized once when
+ * put and can be shared between threads.
+ */
+public final class ArticleCache {
+    private static final String TAG = "ArticleCache";
+
+    /** Budget in chars of article text. */
+    private static final int MAX_SIZE_CHARS = 1024 * 1024;
+
+    private static ArticleCache sInstance;
+
+    private final LruCache<Long, Article> mCache = new LruCache<Long, Article>(MAX_SIZE_CHARS) {
+        @Override
+        protected int sizeOf(Long id, Article article) {
+            int size = length(article.getTitle()) + length(article.getAuthor())
+                    + length(article.getImagePath()) + length(article.getThumbUrl());
+            for (int i = 0; i < article.getParagraphCount(); i++) {
+                size += length(article.getParagraph(i));
+            }
+            return size;
+        }
+    };
+
+    private final CopyOnWriteArraySet<OnInvalidatedListener> mListeners =
+            new CopyOnWriteArraySet<OnInvalidatedListener>();
+    private long mGeneration;
+
+    /**
+     * Told when a change has been seen, after the entries it affects have been evicted. Called
+     * on a binder thread.
+     */
+    public interface OnInvalidatedListener {
+        void onInvalidated();
+    }
+
+    private ArticleCache(Context context) {
+        // Called on the binder thread, without a handler hop.
+        context.getContentResolver().registerContentObserver(ItemsContract.Items.buildDirUri(),
+                true, new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        onChange(selfChange, null);
+                    }
+
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        invalidate(uri);
+                    }
+                });
+    }
+
+    public static synchronized ArticleCache get(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached article with the given id, or {@code null}.
+     */
+    public Article get(long id) {
+        final Article article = mCache.get(id);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, (article != null ? "Hit " : "Miss ") + id + ": " + mCache);
+        }
+        return article;
+    }
+
+    /**
+     * Caches an article loaded from data read at {@code generation}, unless the data has
+     * changed since.
+     */
+    public synchronized void put(Article article, long generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mCache.put(article.getId(), article);
+    }
+
+    /**
+     * Returns the current generation, to be taken before reading the data an article is built
+     * from and handed back to {@link #put(Article, long)}.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Returns the article with the given id from the cache, or queries, builds and caches it.
+     * Returns {@code null} if there is no such article. Must not be called on the main thread.
+     */
+    public Article load(ContentResolver resolver, long id) {
+        Article article = get(id);
+        if (article != null) {
+            return article;
+        }
+        final long generation = getGeneration();
+        final Cursor item = resolver.query(ItemsContract.Items.buildItemUri(id),
+                ArticleLoader.Query.PROJECTION, null, null, null);
+        if (item == null) {
+            return null;
+        }
+        try {
+            if (!item.moveToFirst()) {
+                return null;
+            }
+            final Cursor paragraphs = resolver.query(
+                    ItemsContract.Paragraphs.buildItemParagraphsUri(id),
+                    ArticleLoader.ParagraphQuery.PROJECTION, null, null,
+                    ItemsContract.Paragraphs.DEFAULT_SORT);
+            if (paragraphs == null) {
+                return null;
+            }
+            try {
+                article = Article.fromCursors(item, paragraphs);
+            } finally {
+                paragraphs.close();
+            }
+        } finally {
+            item.close();
+        }
+        put(article, generation);
+        return article;
+    }
+
+    public void addOnInvalidatedListener(OnInvalidatedListener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeOnInvalidatedListener(OnInvalidatedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    private void invalidate(Uri uri) {
+        synchronized (this) {
+            mGeneration++;
+            final List<String> paths = uri != null ? uri.getPathSegments() : null;
+            if (paths != null && paths.size() == 2 && TextUtils.isDigitsOnly(paths.get(1))) {
+                mCache.remove(ItemsContract.Items.getItemId(uri));
+            } else {
+                mCache.evictAll();
+            }
+        }
+        for (OnInvalidatedListener listener : mListeners) {
+            listener.onInvalidated();
+        }
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
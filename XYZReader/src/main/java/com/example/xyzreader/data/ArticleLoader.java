@@ -2,22 +2,129 @@ package com.example.xyzreader.data;
 
 import android.content.Context;
 import android.content.CursorLoader;
+import android.database.Cursor;
 import android.net.Uri;
 
+import java.util.ArrayList;
+
 /**
- * Helper for loading a list of articles or a single article.
+ * Helper for loading a list of articles, a single article or an article's paragraphs.
  */
 public class ArticleLoader extends CursorLoader {
+    private long mCacheGeneration;
+
+    /**
+     * Loads every article with {@link Query#PROJECTION}, which leaves out the body so the
+     * cursor window only carries what the grid and the pager need.
+     */
     public static ArticleLoader newAllArticlesInstance(Context context) {
-        return new ArticleLoader(context, ItemsContract.Items.buildDirUri());
+        return new ArticleLoader(context, ItemsContract.Items.buildDirUri(), Query.PROJECTION);
     }
 
+    /**
+     * Loads a single article with {@link Query#PROJECTION}; its body is loaded paragraph by
+     * paragraph through {@link #newParagraphsInstanceForItemId(Context, long)}.
+     */
     public static ArticleLoader newInstanceForItemId(Context context, long itemId) {
-        return new ArticleLoader(context, ItemsContract.Items.buildItemUri(itemId));
+        return new ArticleLoader(context, ItemsContract.Items.buildItemUri(itemId),
+                Query.PROJECTION);
+    }
+
+    /**
+     * Loads the paragraphs of an article's body, in order.
+     */
+    public static ArticleLoader newParagraphsInstanceForItemId(Context context, long itemId) {
+        return new ArticleLoader(context, ItemsContract.Paragraphs.buildItemParagraphsUri(itemId),
+                ParagraphQuery.PROJECTION, null, null, ItemsContract.Paragraphs.DEFAULT_SORT);
     }
 
-    private ArticleLoader(Context context, Uri uri) {
-        super(context, uri, Query.PROJECTION, null, null, ItemsContract.Items.DEFAULT_SORT);
+    /**
+     * Loads one page of the list in {@link ItemsContract.Items#DEFAULT_SORT} order, paging on the
+     * (published date, id) keyset rather than an OFFSET. The page starts right after
+     * {@code after}, or at the top when it is null. When {@code until} is given the page runs up
+     * to and including that row; otherwise it holds at most {@code limit} rows.
+     */
+    public static ArticleLoader newPageInstance(Context context, Key after, Key until, int limit) {
+        final StringBuilder selection = new StringBuilder();
+        final ArrayList<String> selectionArgs = new ArrayList<String>();
+        if (after != null) {
+            // The leading bound alone is a range on the published date index, so a deep page
+            // seeks to its key instead of scanning every row above it; ties are settled by id.
+            selection.append(ItemsContract.Items.PUBLISHED_DATE + "<=? AND ("
+                    + ItemsContract.Items.PUBLISHED_DATE + "<? OR "
+                    + ItemsContract.Items._ID + "<?)");
+            after.addTo(selectionArgs);
+        }
+        if (until != null) {
+            if (selection.length() > 0) {
+                selection.append(" AND ");
+            }
+            selection.append(ItemsContract.Items.PUBLISHED_DATE + ">=? AND ("
+                    + ItemsContract.Items.PUBLISHED_DATE + ">? OR "
+                    + ItemsContract.Items._ID + ">=?)");
+            until.addTo(selectionArgs);
+        }
+        final Uri uri = until == null
+                ? ItemsContract.Items.buildDirUri(limit)
+                : ItemsContract.Items.buildDirUri();
+        return new ArticleLoader(context, uri, Query.PROJECTION,
+                selection.length() > 0 ? selection.toString() : null,
+                selectionArgs.toArray(new String[selectionArgs.size()]));
+    }
+
+    private ArticleLoader(Context context, Uri uri, String[] projection) {
+        this(context, uri, projection, null, null);
+    }
+
+    private ArticleLoader(Context context, Uri uri, String[] projection, String selection,
+                          String[] selectionArgs) {
+        this(context, uri, projection, selection, selectionArgs,
+                ItemsContract.Items.DEFAULT_SORT);
+    }
+
+    private ArticleLoader(Context context, Uri uri, String[] projection, String selection,
+                          String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        // Taken before the query, so a change racing it makes the result count as stale.
+        mCacheGeneration = ArticleCache.get(getContext()).getGeneration();
+        return super.loadInBackground();
+    }
+
+    /**
+     * Returns the {@link ArticleCache} generation the last delivered load started at.
+     */
+    public long getCacheGeneration() {
+        return mCacheGeneration;
+    }
+
+    /**
+     * Position of a row in {@link ItemsContract.Items#DEFAULT_SORT} order.
+     */
+    public static final class Key {
+        public final long publishedDate;
+        public final long id;
+
+        public Key(long publishedDate, long id) {
+            this.publishedDate = publishedDate;
+            this.id = id;
+        }
+
+        /**
+         * Reads the key of the current row of a cursor loaded with {@link Query#PROJECTION}.
+         */
+        public static Key of(Cursor cursor) {
+            return new Key(cursor.getLong(Query.PUBLISHED_DATE), cursor.getLong(Query._ID));
+        }
+
+        private void addTo(ArrayList<String> selectionArgs) {
+            selectionArgs.add(Long.toString(publishedDate));
+            selectionArgs.add(Long.toString(publishedDate));
+            selectionArgs.add(Long.toString(id));
+        }
     }
 
     public interface Query {
@@ -29,7 +136,7 @@ public class ArticleLoader extends CursorLoader {
                 ItemsContract.Items.THUMB_URL,
                 ItemsContract.Items.PHOTO_URL,
                 ItemsContract.Items.ASPECT_RATIO,
-                ItemsContract.Items.BODY,
+                ItemsContract.Items.MUTED_COLOR,
         };
 
         int _ID = 0;
@@ -39,6 +146,16 @@ public class ArticleLoader extends CursorLoader {
         int THUMB_URL = 4;
         int PHOTO_URL = 5;
         int ASPECT_RATIO = 6;
-        int BODY = 7;
+        int MUTED_COLOR = 7;
+    }
+
+    public interface ParagraphQuery {
+        String[] PROJECTION = {
+                ItemsContract.Paragraphs._ID,
+                ItemsContract.Paragraphs.TEXT,
+        };
+
+        int _ID = 0;
+        int TEXT = 1;
     }
 }
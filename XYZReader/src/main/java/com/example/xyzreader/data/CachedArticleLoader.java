@@ -0,0 +1,74 @@
+package com.example.xyzreader.data;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Loads a single fully built {@link Article} through the {@link ArticleCache}, so an article
+ * already cached costs no query. Reloads whenever the cache is invalidated, which it is on any
+ * change to the articles. Delivers {@code null} if there is no such article.
+ */
+public class CachedArticleLoader extends AsyncTaskLoader<Article> {
+    private final long mItemId;
+    private final ArticleCache mCache;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArticleCache.OnInvalidatedListener mListener =
+            new ArticleCache.OnInvalidatedListener() {
+                @Override
+                public void onInvalidated() {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onContentChanged();
+                        }
+                    });
+                }
+            };
+
+    private Article mArticle;
+
+    public CachedArticleLoader(Context context, long itemId) {
+        super(context);
+        mItemId = itemId;
+        mCache = ArticleCache.get(context);
+    }
+
+    @Override
+    public Article loadInBackground() {
+        return mCache.load(getContext().getContentResolver(), mItemId);
+    }
+
+    @Override
+    public void deliverResult(Article article) {
+        mArticle = article;
+        if (isStarted()) {
+            super.deliverResult(article);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        mCache.addOnInvalidatedListener(mListener);
+        if (mArticle != null) {
+            deliverResult(mArticle);
+        }
+        if (takeContentChanged() || mArticle == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mCache.removeOnInvalidatedListener(mListener);
+        mArticle = null;
+    }
+}
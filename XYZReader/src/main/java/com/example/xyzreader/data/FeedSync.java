@@ -0,0 +1,466 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.example.xyzreader.R;
+import com.example.xyzreader.remote.RemoteEndpointUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.Response;
+
+/**
+ * Brings the stored articles up to date with the remote feed, then warms the caches that
+ * depend on them. Shared by the sync started from the app, {@link UpdaterService}, and the
+ * scheduled one, {@link SyncJobService}. Blocks, so it must not run on the main thread.
+ * <p>
+ * Only one sync runs at a time in the process. A request made while one is in flight waits for
+ * it instead of fetching again, and so does a request that was queued before the last
+ * successful sync started; both count as coalesced.
+ */
+public class FeedSync {
+    private static final String TAG = "FeedSync";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public enum Result {
+        /** New articles were stored. */
+        CHANGED,
+        /** The feed was unchanged since the last sync. */
+        NOT_MODIFIED,
+        /** The feed could not be fetched or stored; worth retrying later. */
+        FAILED,
+        /**
+         * Another caller's sync, started after this request was made, has brought the articles
+         * up to date and warms the caches itself.
+         */
+        COALESCED
+    }
+
+    private static final ExecutorService sWarmUpExecutor = Executors.newSingleThreadExecutor();
+
+    private static final Object sLock = new Object();
+    /** Completes when the sync in flight ends; null while none is. */
+    private static CountDownLatch sInFlight;
+    /** {@link SystemClock#elapsedRealtime()} at which the last successful sync started. */
+    private static long sLastSuccessStartMillis = -1;
+    private static long sInFlightStartMillis;
+    private static Result sLastResult;
+    private static int sSyncCount;
+    private static int sCoalescedCount;
+
+    private final Context mContext;
+    // Number of parsed articles held before they are written out in one transaction.
+    private final int mCommitChunkSize;
+
+    public FeedSync(Context context) {
+        mContext = context.getApplicationContext();
+        mCommitChunkSize = context.getResources().getInteger(R.integer.sync_commit_chunk_size);
+    }
+
+    /**
+     * Returns whether there is a network to sync over.
+     */
+    public boolean isOnline() {
+        ConnectivityManager cm =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo ni = cm.getActiveNetworkInfo();
+        return ni != null && ni.isConnected();
+    }
+
+    /**
+     * Fetches the feed and stores what changed in it, unless another sync covers the request:
+     * then waits for that one and returns {@link Result#COALESCED}, or {@link Result#FAILED} if
+     * it failed. A successful sync is recorded with {@link SyncScheduler#markSynced(Context)}.
+     *
+     * @param requestMillis the {@link SystemClock#elapsedRealtime()} at which the sync was asked
+     *                      for
+     */
+    public Result syncFeed(long requestMillis) {
+        final CountDownLatch latch;
+        final boolean lead;
+        synchronized (sLock) {
+            lead = sInFlight == null && sLastSuccessStartMillis < requestMillis;
+            if (lead) {
+                sInFlight = new CountDownLatch(1);
+                sInFlightStartMillis = SystemClock.elapsedRealtime();
+                sSyncCount++;
+            } else {
+                sCoalescedCount++;
+                Log.i(TAG, "Coalesced sync request; " + sCoalescedCount + " of "
+                        + (sSyncCount + sCoalescedCount) + " requests so far.");
+            }
+            latch = sInFlight;
+        }
+
+        if (lead) {
+            return runSync(latch);
+        }
+        // Null if the request was covered by a sync that has already ended.
+        if (latch != null) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.FAILED;
+            }
+            synchronized (sLock) {
+                if (sLastResult == Result.FAILED) {
+                    return Result.FAILED;
+                }
+            }
+        }
+        return Result.COALESCED;
+    }
+
+    /**
+     * Returns the number of syncs that fetched the feed since the process started.
+     */
+    public static int getSyncCount() {
+        synchronized (sLock) {
+            return sSyncCount;
+        }
+    }
+
+    /**
+     * Returns the number of sync requests served by another sync since the process started.
+     */
+    public static int getCoalescedCount() {
+        synchronized (sLock) {
+            return sCoalescedCount;
+        }
+    }
+
+    private Result runSync(CountDownLatch latch) {
+        Result result = Result.FAILED;
+        try {
+            result = fetchAndStore();
+            return result;
+        } finally {
+            synchronized (sLock) {
+                if (result != Result.FAILED) {
+                    sLastSuccessStartMillis = sInFlightStartMillis;
+                }
+                sLastResult = result;
+                sInFlight = null;
+            }
+            latch.countDown();
+        }
+    }
+
+    private Result fetchAndStore() {
+        Result result;
+        try {
+            // Validators only describe what is already stored; an empty table needs the full feed.
+            if (isEmpty()) {
+                RemoteEndpointUtil.clearValidators(mContext);
+            }
+
+            Response response = RemoteEndpointUtil.fetchFeed(mContext);
+            // Closed whatever happens, so a failure before the body is read cannot leak the
+            // connection.
+            try {
+                if (RemoteEndpointUtil.isNotModified(response)) {
+                    Log.i(TAG, "Feed not modified, nothing to update.");
+                    result = Result.NOT_MODIFIED;
+                } else {
+                    // A failure part way leaves the store partly updated; without validators
+                    // the next sync downloads the full feed again and its diff repairs the rest.
+                    RemoteEndpointUtil.clearValidators(mContext);
+                    storeItems(response);
+                    RemoteEndpointUtil.saveValidators(mContext, response);
+                    result = Result.CHANGED;
+                }
+            } finally {
+                response.body().close();
+            }
+        } catch (IOException | IllegalStateException | RemoteException
+                | OperationApplicationException e) {
+            Log.e(TAG, "Error updating content.", e);
+            return Result.FAILED;
+        }
+
+        SyncScheduler.markSynced(mContext);
+        return result;
+    }
+
+    /**
+     * Runs {@link #warmCaches(Result)} on a background thread shared by the process, so the
+     * caller is free for the next request at once. Warm-ups run one at a time, in order. This
+     * is best effort: if the process goes away first, the next sync warms the caches again.
+     */
+    public void warmCachesInBackground(final Result result) {
+        if (result == Result.COALESCED || result == Result.FAILED) {
+            return;
+        }
+        sWarmUpExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                warmCaches(result);
+            }
+        });
+    }
+
+    /**
+     * Downloads the images of a changed feed and fills in missing photo colors. Runs after
+     * {@link #syncFeed(long)}, once the articles themselves are usable.
+     */
+    public void warmCaches(Result result) {
+        if (result == Result.COALESCED || result == Result.FAILED) {
+            return;
+        }
+        if (result == Result.CHANGED) {
+            new ImageWarmUp(mContext).run();
+        }
+        // Also after an unchanged feed, to retry photos that could not be analyzed before.
+        new PaletteExtractor(mContext).run();
+    }
+
+    /**
+     * Streams the articles of a feed response into the provider, diffed against what is already
+     * stored: new articles are inserted, changed ones updated in place by server id, unchanged
+     * ones skipped, and articles gone from the feed deleted once the whole feed has been read.
+     * Operations are flushed in small batches, so memory stays bounded by one batch plus the
+     * stored server ids rather than the whole feed.
+     * <p>
+     * Each batch commits on its own, so the store is not updated atomically: if reading or
+     * writing fails part way, the batches already written stay. The caller only saves the
+     * feed's validators once this returns, so the next sync compares against the full feed and
+     * brings every row in line.
+     */
+    private void storeItems(Response response)
+            throws IOException, RemoteException, OperationApplicationException {
+        try (JsonReader reader = RemoteEndpointUtil.openJsonReader(response)) {
+            storeItems(reader);
+        }
+    }
+
+    /**
+     * Stores the feed array read from {@code reader}, as {@link #storeItems(Response)} does.
+     * Articles without a server id are skipped: they could never be matched up with a stored
+     * row, so they would be inserted again on every sync.
+     */
+    void storeItems(JsonReader reader)
+            throws IOException, RemoteException, OperationApplicationException {
+        ArrayList<ContentValues> inserts = new ArrayList<ContentValues>();
+        ArrayList<ContentProviderOperation> cpo = new ArrayList<ContentProviderOperation>();
+
+        Uri dirUri = ItemsContract.Items.buildDirUri();
+
+        // Everything left in here once the feed is read is no longer published.
+        HashMap<String, Long> storedHashes = queryStoredHashes();
+        HashSet<String> seenIds = new HashSet<String>();
+        int unchanged = 0;
+        int skipped = 0;
+        long startMillis = SystemClock.elapsedRealtime();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ContentValues values = readItem(reader);
+            String serverId = values.getAsString(ItemsContract.Items.SERVER_ID);
+            if (serverId == null) {
+                skipped++;
+                continue;
+            }
+            if (!seenIds.add(serverId)) {
+                Log.w(TAG, "Skipping duplicate item " + serverId);
+                continue;
+            }
+
+            boolean stored = storedHashes.containsKey(serverId);
+            Long storedHash = storedHashes.remove(serverId);
+            if (!stored) {
+                inserts.add(values);
+            } else if (!values.getAsLong(ItemsContract.Items.CONTENT_HASH).equals(storedHash)) {
+                // The photo may have changed; its colors are extracted again.
+                values.putNull(ItemsContract.Items.MUTED_COLOR);
+                values.putNull(ItemsContract.Items.VIBRANT_COLOR);
+                cpo.add(ContentProviderOperation.newUpdate(dirUri)
+                        .withSelection(ItemsContract.Items.SERVER_ID + "=?", new String[]{serverId})
+                        .withValues(values)
+                        .build());
+            } else {
+                unchanged++;
+            }
+
+            if (inserts.size() + cpo.size() >= mCommitChunkSize) {
+                flush(dirUri, inserts, cpo);
+            }
+        }
+        reader.endArray();
+        if (skipped > 0) {
+            Log.w(TAG, "Skipped " + skipped + " items without an id");
+        }
+
+        flush(dirUri, inserts, cpo);
+
+        // Deletes go out as one batch, committed at once, so the list never shows a
+        // half-deleted feed.
+        for (String serverId : storedHashes.keySet()) {
+            cpo.add(ContentProviderOperation.newDelete(dirUri)
+                    .withSelection(ItemsContract.Items.SERVER_ID + "=?", new String[]{serverId})
+                    .build());
+        }
+        flush(dirUri, inserts, cpo);
+
+        long elapsedMillis = Math.max(1, SystemClock.elapsedRealtime() - startMillis);
+        Log.i(TAG, "Synced " + seenIds.size() + " items in " + elapsedMillis + " ms ("
+                + (seenIds.size() * 1000L / elapsedMillis) + " rows/s): " + unchanged
+                + " unchanged, " + storedHashes.size() + " removed.");
+    }
+
+    /**
+     * Writes out the pending new rows through the provider's bulk insert path and applies the
+     * pending updates and deletes, then clears both. Each call commits on its own, so readers
+     * are only ever held up for one chunk.
+     */
+    private void flush(Uri dirUri, ArrayList<ContentValues> inserts,
+                       ArrayList<ContentProviderOperation> cpo)
+            throws RemoteException, OperationApplicationException {
+        if (!inserts.isEmpty()) {
+            mContext.getContentResolver().bulkInsert(dirUri, inserts.toArray(new ContentValues[inserts.size()]));
+            inserts.clear();
+        }
+        if (!cpo.isEmpty()) {
+            mContext.getContentResolver().applyBatch(ItemsContract.CONTENT_AUTHORITY, cpo);
+            cpo.clear();
+        }
+    }
+
+    /**
+     * Returns the content hash of every stored article, keyed by server id.
+     */
+    private HashMap<String, Long> queryStoredHashes() {
+        HashMap<String, Long> hashes = new HashMap<String, Long>();
+        Cursor cursor = mContext.getContentResolver().query(ItemsContract.Items.buildDirUri(),
+                new String[]{ItemsContract.Items.SERVER_ID, ItemsContract.Items.CONTENT_HASH},
+                null, null, null);
+        if (cursor == null) {
+            return hashes;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(0)) {
+                    hashes.put(cursor.getString(0), cursor.isNull(1) ? null : cursor.getLong(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return hashes;
+    }
+
+    private boolean isEmpty() {
+        // Reading one row is enough to tell, however many are stored.
+        Cursor cursor = mContext.getContentResolver().query(ItemsContract.Items.buildDirUri(1),
+                new String[]{ItemsContract.Items._ID}, null, null, null);
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            return cursor.getCount() == 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads the next article object from the feed into a set of {@link ContentValues}, along
+     * with a hash of its fields. Fields that are not part of the schema, or that are null, are
+     * skipped.
+     */
+    private static ContentValues readItem(JsonReader reader) throws IOException {
+        ContentValues values = new ContentValues();
+        long hash = FNV_OFFSET_BASIS;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String column = columnForField(reader.nextName());
+            if (column == null || reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            // nextString() also returns numbers in their string form.
+            String value = reader.nextString();
+            if (ItemsContract.Items.PUBLISHED_DATE.equals(column)) {
+                values.put(column, parsePublishedDate(value));
+            } else {
+                values.put(column, value);
+            }
+            // The hash covers the raw feed text, so it is stable however fields are stored.
+            hash = hash(hash(hash, column), value);
+        }
+        reader.endObject();
+        values.put(ItemsContract.Items.CONTENT_HASH, hash);
+        return values;
+    }
+
+    /**
+     * Converts the feed's ISO-8601 date to epoch millis once, at ingest, so binding only has to
+     * read a long. Dates without a zone are in the device's time zone. Unreadable dates fall
+     * back to the time of the sync.
+     */
+    private static long parsePublishedDate(String date) {
+        long millis = IsoDateParser.parse(date, TimeZone.getDefault());
+        if (millis == IsoDateParser.INVALID) {
+            Log.w(TAG, "Unreadable published date " + date + ", using the current time");
+            millis = System.currentTimeMillis();
+        }
+        return millis;
+    }
+
+    /**
+     * Folds a string into a 64-bit FNV-1a hash. The string is terminated with a zero char so
+     * that field boundaries count.
+     */
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash * FNV_PRIME;
+    }
+
+    private static String columnForField(String field) {
+        switch (field) {
+            case "id":
+                return ItemsContract.Items.SERVER_ID;
+            case "author":
+                return ItemsContract.Items.AUTHOR;
+            case "title":
+                return ItemsContract.Items.TITLE;
+            case "body":
+                return ItemsContract.Items.BODY;
+            case "thumb":
+                return ItemsContract.Items.THUMB_URL;
+            case "photo":
+                return ItemsContract.Items.PHOTO_URL;
+            case "aspect_ratio":
+                return ItemsContract.Items.ASPECT_RATIO;
+            case "published_date":
+                return ItemsContract.Items.PUBLISHED_DATE;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.xyzreader.data;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.net.ConnectivityManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.example.xyzreader.R;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the images of the newest articles into Glide's disk cache after a sync, so the first
+ * scroll through the grid and the first pages opened do not wait on the network.
+ * <p>
+ * Thumbnails of the first {@code R.integer.warm_up_thumbnail_count} articles and photos of the
+ * first {@code R.integer.warm_up_photo_count} are fetched in list order, at most
+ * {@code R.integer.warm_up_parallelism} at a time. Only the source data is cached, which every
+ * sized request for the same URL decodes from. No new download starts once
+ * {@code R.integer.warm_up_budget_kb} has been downloaded, and with
+ * {@code R.bool.warm_up_unmetered_only} nothing runs on a metered network. Runs on the caller's
+ * thread, which must not be the main thread.
+ */
+public class ImageWarmUp {
+    private static final String TAG = "ImageWarmUp";
+
+    private final Context mContext;
+    private final int mThumbnailCount;
+    private final int mPhotoCount;
+    private final int mParallelism;
+    private final long mBudgetBytes;
+    private final boolean mUnmeteredOnly;
+
+    private final AtomicLong mDownloadedBytes = new AtomicLong();
+    private final AtomicInteger mDownloadedCount = new AtomicInteger();
+    private final AtomicInteger mCachedCount = new AtomicInteger();
+    private final AtomicInteger mFailedCount = new AtomicInteger();
+
+    public ImageWarmUp(Context context) {
+        mContext = context.getApplicationContext();
+        final Resources res = context.getResources();
+        mThumbnailCount = res.getInteger(R.integer.warm_up_thumbnail_count);
+        mPhotoCount = res.getInteger(R.integer.warm_up_photo_count);
+        mParallelism = Math.max(1, res.getInteger(R.integer.warm_up_parallelism));
+        mBudgetBytes = res.getInteger(R.integer.warm_up_budget_kb) * 1024L;
+        mUnmeteredOnly = res.getBoolean(R.bool.warm_up_unmetered_only);
+    }
+
+    /**
+     * Warms the cache, blocking until every download started has finished.
+     */
+    public void run() {
+        if (mThumbnailCount <= 0 && mPhotoCount <= 0) {
+            return;
+        }
+        final ConnectivityManager cm =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (mUnmeteredOnly && cm.isActiveNetworkMetered()) {
+            Log.i(TAG, "Metered network, not warming images.");
+            return;
+        }
+
+        final long startMillis = SystemClock.elapsedRealtime();
+        final List<String> urls = queryUrls();
+        final RequestManager requestManager = Glide.with(mContext);
+        final RequestListener<File> listener = new RequestListener<File>() {
+            @Override
+            public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                        Target<File> target, boolean isFirstResource) {
+                mFailedCount.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public boolean onResourceReady(File resource, Object model, Target<File> target,
+                                           DataSource dataSource, boolean isFirstResource) {
+                if (dataSource == DataSource.REMOTE) {
+                    mDownloadedCount.incrementAndGet();
+                    mDownloadedBytes.addAndGet(resource.length());
+                } else {
+                    mCachedCount.incrementAndGet();
+                }
+                return false;
+            }
+        };
+
+        // A window of outstanding downloads; the oldest is waited on before the next starts.
+        final ArrayDeque<FutureTarget<File>> inFlight = new ArrayDeque<FutureTarget<File>>();
+        for (String url : urls) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (mDownloadedBytes.get() >= mBudgetBytes) {
+                Log.i(TAG, "Byte budget spent, not warming the remaining images.");
+                break;
+            }
+            if (inFlight.size() >= mParallelism) {
+                await(requestManager, inFlight.poll());
+            }
+            inFlight.add(requestManager.downloadOnly().load(url).listener(listener).submit());
+        }
+        while (!inFlight.isEmpty()) {
+            await(requestManager, inFlight.poll());
+        }
+
+        Log.i(TAG, "Warmed images in " + (SystemClock.elapsedRealtime() - startMillis) + " ms: "
+                + mDownloadedCount + " downloaded (" + mDownloadedBytes.get() / 1024 + " KB), "
+                + mCachedCount + " already cached, " + mFailedCount + " failed.");
+    }
+
+    /**
+     * Returns the thumbnail URLs of the first articles, then their photo URLs, without repeats.
+     */
+    private List<String> queryUrls() {
+        final List<String> thumbnails = new ArrayList<String>();
+        final List<String> photos = new ArrayList<String>();
+        final Cursor cursor = mContext.getContentResolver().query(
+                ItemsContract.Items.buildDirUri(Math.max(mThumbnailCount, mPhotoCount)),
+                new String[]{ItemsContract.Items.THUMB_URL, ItemsContract.Items.PHOTO_URL},
+                null, null, ItemsContract.Items.DEFAULT_SORT);
+        if (cursor == null) {
+            return thumbnails;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                final int position = cursor.getPosition();
+                if (position < mThumbnailCount && !cursor.isNull(0)) {
+                    thumbnails.add(cursor.getString(0));
+                }
+                if (position < mPhotoCount && !cursor.isNull(1)
+                        && !thumbnails.contains(cursor.getString(1))) {
+                    photos.add(cursor.getString(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        // The grid is the first thing shown, so its thumbnails go first.
+        thumbnails.addAll(photos);
+        return thumbnails;
+    }
+
+    private static void await(RequestManager requestManager, FutureTarget<File> target) {
+        try {
+            target.get();
+        } catch (ExecutionException e) {
+            // Counted by the listener; one bad image does not stop the rest.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            requestManager.clear(target);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.xyzreader.data;
+
+import java.util.TimeZone;
+
+/**
+ * Allocation-free parser for the ISO-8601 timestamps used by the feed, such as
+ * {@code 2013-06-20T00:00:00.000Z}. Time, fraction and zone designator are optional; a timestamp
+ * without a zone designator is local time in the zone the caller passes, as it was for the
+ * {@link java.text.SimpleDateFormat} this replaces.
+ */
+final class IsoDateParser {
+    /** Returned for text that is not a timestamp. */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private IsoDateParser() {
+    }
+
+    /**
+     * Returns the timestamp as milliseconds since the epoch, or {@link #INVALID}.
+     *
+     * @param zone the zone of a timestamp without a zone designator
+     */
+    static long parse(CharSequence text, TimeZone zone) {
+        final int length = text.length();
+        if (length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID;
+        }
+        final int year = digits(text, 0, 4);
+        final int month = digits(text, 5, 2);
+        final int day = digits(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millis = 0;
+        int i = 10;
+        if (i < length && (text.charAt(i) == 'T' || text.charAt(i) == ' ')) {
+            if (i + 6 > length || text.charAt(i + 3) != ':') {
+                return INVALID;
+            }
+            hour = digits(text, i + 1, 2);
+            minute = digits(text, i + 4, 2);
+            i += 6;
+            if (i < length && text.charAt(i) == ':') {
+                second = digits(text, i + 1, 2);
+                i += 3;
+                if (i < length && (text.charAt(i) == '.' || text.charAt(i) == ',')) {
+                    final int fractionStart = ++i;
+                    // Anything past millisecond precision is dropped.
+                    int scale = 100;
+                    while (i < length && isDigit(text.charAt(i))) {
+                        millis += (text.charAt(i) - '0') * scale;
+                        scale /= 10;
+                        i++;
+                    }
+                    if (i == fractionStart) {
+                        return INVALID;
+                    }
+                }
+            }
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+                return INVALID;
+            }
+        }
+
+        final long localMillis = (daysFromCivil(year, month, day) * 86400L
+                + hour * 3600L + minute * 60L + second) * 1000L + millis;
+        if (i == length) {
+            // The zone's offset at about that instant; a wall time skipped or repeated by a
+            // daylight saving change resolves to one of its candidates.
+            return localMillis - zone.getOffset(localMillis - zone.getRawOffset());
+        }
+
+        long offsetMillis = 0;
+        final char designator = text.charAt(i);
+        if (designator == 'Z') {
+            i++;
+        } else if (designator == '+' || designator == '-') {
+            final int offsetHours = digits(text, i + 1, 2);
+            i += 3;
+            if (i < length && text.charAt(i) == ':') {
+                i++;
+            }
+            int offsetMinutes = 0;
+            if (i < length) {
+                offsetMinutes = digits(text, i, 2);
+                i += 2;
+            }
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                return INVALID;
+            }
+            offsetMillis = (offsetHours * 60L + offsetMinutes) * 60000L;
+            if (designator == '-') {
+                offsetMillis = -offsetMillis;
+            }
+        }
+        if (i != length) {
+            return INVALID;
+        }
+        return localMillis - offsetMillis;
+    }
+
+    /** Returns the value of {@code count} decimal digits, or -1 if any of them is not a digit. */
+    private static int digits(CharSequence text, int start, int count) {
+        if (start + count > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Days between 1970-01-01 and the given proleptic Gregorian date, after Howard Hinnant's
+     * {@code days_from_civil}.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        final int era = (year >= 0 ? year : year - 399) / 400;
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -6,6 +6,11 @@ public class ItemsContract {
 	public static final String CONTENT_AUTHORITY = "com.example.xyzreader";
 	public static final Uri BASE_URI = Uri.parse("content://com.example.xyzreader");
 
+	/** Optional query parameter capping the number of rows a directory query returns. */
+	public static final String QUERY_PARAMETER_LIMIT = "limit";
+	/** Query parameter carrying the text to search for, see {@link Search}. */
+	public static final String QUERY_PARAMETER_QUERY = "q";
+
 	interface ItemsColumns {
 		/** Type: INTEGER PRIMARY KEY AUTOINCREMENT */
 		String _ID = "_id";
@@ -23,21 +28,37 @@ public class ItemsContract {
 		String PHOTO_URL = "photo_url";
 		/** Type: REAL NOT NULL DEFAULT 1.5 */
 		String ASPECT_RATIO = "aspect_ratio";
-		/** Type: INTEGER NOT NULL DEFAULT 0 */
+		/** Type: INTEGER NOT NULL DEFAULT 0. Milliseconds since the epoch. */
 		String PUBLISHED_DATE = "published_date";
+		/** Type: INTEGER. Hash of the feed fields the row was last written from. */
+		String CONTENT_HASH = "content_hash";
+		/**
+		 * Type: INTEGER. ARGB of the photo's muted swatch, 0 if it has none. Null until the photo
+		 * has been through {@link PaletteExtractor}.
+		 */
+		String MUTED_COLOR = "muted_color";
+		/** Type: INTEGER. ARGB of the photo's vibrant swatch, like {@link #MUTED_COLOR}. */
+		String VIBRANT_COLOR = "vibrant_color";
 	}
 
 	public static class Items implements ItemsColumns {
 		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.com.example.xyzreader.items";
 		public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.com.example.xyzreader.items";
 
-        public static final String DEFAULT_SORT = PUBLISHED_DATE + " DESC";
+        /** Newest first; ties are broken by {@code _id} so the order is a stable keyset. */
+        public static final String DEFAULT_SORT = PUBLISHED_DATE + " DESC, " + _ID + " DESC";
 
 		/** Matches: /items/ */
 		public static Uri buildDirUri() {
 			return BASE_URI.buildUpon().appendPath("items").build();
 		}
 
+		/** Matches: /items/?limit=[limit] */
+		public static Uri buildDirUri(int limit) {
+			return buildDirUri().buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(limit)).build();
+		}
+
 		/** Matches: /items/[_id]/ */
 		public static Uri buildItemUri(long _id) {
 			return BASE_URI.buildUpon().appendPath("items").appendPath(Long.toString(_id)).build();
@@ -49,6 +70,70 @@ public class ItemsContract {
         }
 	}
 
+	interface ParagraphsColumns {
+		/** Type: INTEGER PRIMARY KEY */
+		String _ID = "_id";
+		/** Type: INTEGER NOT NULL. The {@code _id} of the article the paragraph belongs to. */
+		String ITEM_ID = "item_id";
+		/** Type: INTEGER NOT NULL. Position of the paragraph in its article, from 0. */
+		String ORDINAL = "ordinal";
+		/** Type: TEXT NOT NULL */
+		String TEXT = "text";
+	}
+
+	/**
+	 * Article bodies split into paragraphs once, when the article is written. Read-only; the
+	 * provider keeps them in step with {@link Items#BODY}.
+	 */
+	public static class Paragraphs implements ParagraphsColumns {
+		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.com.example.xyzreader.paragraphs";
+
+		public static final String DEFAULT_SORT = ORDINAL + " ASC";
+
+		/** Matches: /items/[item_id]/paragraphs/ */
+		public static Uri buildItemParagraphsUri(long itemId) {
+			return Items.buildItemUri(itemId).buildUpon().appendPath("paragraphs").build();
+		}
+	}
+
+	interface SearchColumns {
+		/**
+		 * Type: TEXT. Excerpt of the best matching column, matches wrapped in {@code <b>} tags.
+		 */
+		String SNIPPET = "snippet";
+		/**
+		 * Type: TEXT. Position of every match as the space-separated integer quadruples
+		 * (column, term, byte offset, byte length) of SQLite's {@code offsets()}; columns are
+		 * numbered title, author, body.
+		 */
+		String OFFSETS = "offsets";
+		/** Type: REAL. BM25 relevance, higher is better; results come sorted by it. */
+		String RANK = "rank";
+	}
+
+	/**
+	 * Articles matching a full-text search over their title, author and body, most relevant
+	 * first. Read-only; the query is plain text, every word of which must match.
+	 */
+	public static class Search implements ItemsColumns, SearchColumns {
+		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.com.example.xyzreader.search";
+
+		/** Rows returned when the URI carries no {@link #QUERY_PARAMETER_LIMIT}. */
+		public static final int DEFAULT_LIMIT = 50;
+
+		/** Matches: /items/search/?q=[query] */
+		public static Uri buildSearchUri(String query) {
+			return Items.buildDirUri().buildUpon().appendPath("search")
+					.appendQueryParameter(QUERY_PARAMETER_QUERY, query).build();
+		}
+
+		/** Matches: /items/search/?q=[query]&limit=[limit] */
+		public static Uri buildSearchUri(String query, int limit) {
+			return buildSearchUri(query).buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(limit)).build();
+		}
+	}
+
 	private ItemsContract() {
 	}
 }
@@ -1,22 +1,105 @@
 package com.example.xyzreader.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
 
 import static com.example.xyzreader.data.ItemsProvider.Tables;
 
 public class ItemsDatabase extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "xyzreader.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 8;
+
+    /**
+     * Connection settings applied in {@link #onConfigure(SQLiteDatabase)}. Page size only takes
+     * effect when the database file is first created.
+     * <p>
+     * The framework only calls {@code onConfigure} for the primary connection, which does all
+     * the writing, so under WAL the pooled connections that serve concurrent reads run with
+     * SQLite's defaults. Page size is a property of the file and synchronous only matters to the
+     * writer, so both always apply; cache size and mmap size only speed up the primary
+     * connection, which also serves reads made inside a transaction or while no writer holds it.
+     */
+    public enum TuningProfile {
+        /** SQLite defaults, kept for comparison in benchmarks. */
+        PLATFORM_DEFAULT(0, 0, 0, null),
+        /** Large cache and memory-mapped reads; relaxed fsync is safe under WAL. */
+        BALANCED(4096, -2048, 8 * 1024 * 1024, "NORMAL"),
+        /** Smaller cache and no memory mapping, for low-RAM devices. */
+        LOW_MEMORY(4096, -512, 0, "NORMAL");
+
+        final int pageSize;
+        /** Negative values are in KiB, positive values in pages. */
+        final int cacheSize;
+        final long mmapSize;
+        final String synchronous;
+
+        TuningProfile(int pageSize, int cacheSize, long mmapSize, String synchronous) {
+            this.pageSize = pageSize;
+            this.cacheSize = cacheSize;
+            this.mmapSize = mmapSize;
+            this.synchronous = synchronous;
+        }
+    }
+
+    private final TuningProfile mTuningProfile;
 
     public ItemsDatabase(Context context) {
+        this(context, TuningProfile.BALANCED);
+    }
+
+    public ItemsDatabase(Context context, TuningProfile tuningProfile) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mTuningProfile = tuningProfile;
+        // Let list queries run on their own connection while the sync writes.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        if (mTuningProfile.pageSize > 0) {
+            db.execSQL("PRAGMA page_size=" + mTuningProfile.pageSize);
+        }
+        if (mTuningProfile.cacheSize != 0) {
+            db.execSQL("PRAGMA cache_size=" + mTuningProfile.cacheSize);
+        }
+        if (mTuningProfile.mmapSize > 0) {
+            // Ignored by SQLite builds older than 3.7.17 (before Lollipop).
+            queryPragma(db, "mmap_size=" + mTuningProfile.mmapSize);
+        }
+        if (mTuningProfile.synchronous != null) {
+            db.execSQL("PRAGMA synchronous=" + mTuningProfile.synchronous);
+        }
+    }
+
+    /**
+     * Runs a PRAGMA that returns a row, which {@link SQLiteDatabase#execSQL} refuses. The row
+     * has to be stepped to for the statement to run at all.
+     */
+    private static void queryPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL("CREATE TABLE " + Tables.ITEMS + " ("
+        createItemsTable(db, Tables.ITEMS);
+        addPaletteColumns(db);
+        createServerIdIndex(db);
+        createPublishedDateIndex(db);
+        createParagraphsTable(db);
+        createSearchIndex(db);
+    }
+
+    private static void createItemsTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " ("
                 + ItemsContract.ItemsColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
                 + ItemsContract.ItemsColumns.SERVER_ID + " TEXT,"
                 + ItemsContract.ItemsColumns.TITLE + " TEXT NOT NULL,"
@@ -25,13 +108,196 @@ public class ItemsDatabase extends SQLiteOpenHelper {
                 + ItemsContract.ItemsColumns.THUMB_URL + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.PHOTO_URL + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.ASPECT_RATIO + " REAL NOT NULL DEFAULT 1.5,"
-                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " TEXT NOT NULL"
+                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " INTEGER NOT NULL DEFAULT 0,"
+                + ItemsContract.ItemsColumns.CONTENT_HASH + " INTEGER"
                 + ")" );
     }
 
+    /**
+     * Steps the schema through every version between {@code oldVersion} and {@code newVersion},
+     * so stored articles survive app updates. Each step runs inside the upgrade transaction.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEMS);
-        onCreate(db);
+        if (oldVersion < 2) {
+            // Nothing worth keeping from before the first released schema.
+            db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEMS);
+            onCreate(db);
+            return;
+        }
+
+        for (int version = oldVersion; version < newVersion; version++) {
+            switch (version) {
+                case 2:
+                    upgradeToVersion3(db);
+                    break;
+                case 3:
+                    upgradeToVersion4(db);
+                    break;
+                case 4:
+                    upgradeToVersion5(db);
+                    break;
+                case 5:
+                    upgradeToVersion6(db);
+                    break;
+                case 6:
+                    upgradeToVersion7(db);
+                    break;
+                case 7:
+                    upgradeToVersion8(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration from version " + version);
+            }
+        }
+    }
+
+    /** Version 3: content hash for incremental sync, unique server ids. */
+    private static void upgradeToVersion3(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + Tables.ITEMS + " ADD COLUMN "
+                + ItemsContract.ItemsColumns.CONTENT_HASH + " INTEGER");
+        // Keep the newest copy of any article stored more than once.
+        db.execSQL("DELETE FROM " + Tables.ITEMS + " WHERE " + ItemsContract.ItemsColumns._ID
+                + " NOT IN (SELECT MAX(" + ItemsContract.ItemsColumns._ID + ") FROM " + Tables.ITEMS
+                + " GROUP BY " + ItemsContract.ItemsColumns.SERVER_ID + ")"
+                + " AND " + ItemsContract.ItemsColumns.SERVER_ID + " IS NOT NULL");
+        createServerIdIndex(db);
+    }
+
+    /** Version 4: index backing the list's sort order. */
+    private static void upgradeToVersion4(SQLiteDatabase db) {
+        createPublishedDateIndex(db);
+    }
+
+    /**
+     * Version 5: published date stored as epoch millis. SQLite cannot change a column's type in
+     * place, so the table is rebuilt; the stored ISO-8601 text is converted by julianday(). Like
+     * {@link IsoDateParser}, timestamps without a zone designator are read as local time.
+     */
+    private static void upgradeToVersion5(SQLiteDatabase db) {
+        final String newTable = Tables.ITEMS + "_new";
+        final String columns = ItemsContract.ItemsColumns._ID + ","
+                + ItemsContract.ItemsColumns.SERVER_ID + ","
+                + ItemsContract.ItemsColumns.TITLE + ","
+                + ItemsContract.ItemsColumns.AUTHOR + ","
+                + ItemsContract.ItemsColumns.BODY + ","
+                + ItemsContract.ItemsColumns.THUMB_URL + ","
+                + ItemsContract.ItemsColumns.PHOTO_URL + ","
+                + ItemsContract.ItemsColumns.ASPECT_RATIO + ","
+                + ItemsContract.ItemsColumns.CONTENT_HASH;
+        final String date = ItemsContract.ItemsColumns.PUBLISHED_DATE;
+        createItemsTable(db, newTable);
+        db.execSQL("INSERT INTO " + newTable + " (" + columns + ","
+                + ItemsContract.ItemsColumns.PUBLISHED_DATE + ")"
+                + " SELECT " + columns + ", COALESCE(CAST(ROUND((CASE WHEN " + date
+                + " GLOB '*Z' OR " + date + " GLOB '*[+-][0-9][0-9]:[0-9][0-9]'"
+                + " THEN julianday(" + date + ") ELSE julianday(" + date + ", 'utc') END"
+                + " - 2440587.5) * 86400000) AS INTEGER), 0) FROM " + Tables.ITEMS);
+        db.execSQL("DROP TABLE " + Tables.ITEMS);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + Tables.ITEMS);
+        createServerIdIndex(db);
+        createPublishedDateIndex(db);
+    }
+
+    /** Version 6: bodies pre-split into a paragraphs table. */
+    private static void upgradeToVersion6(SQLiteDatabase db) {
+        createParagraphsTable(db);
+
+        final ParagraphWriter writer = new ParagraphWriter(db);
+        final Cursor cursor = db.query(Tables.ITEMS,
+                new String[]{ItemsContract.ItemsColumns._ID, ItemsContract.ItemsColumns.BODY},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                writer.write(cursor.getLong(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+            writer.close();
+        }
+    }
+
+    /** Version 7: full-text search index, filled from the stored articles. */
+    private static void upgradeToVersion7(SQLiteDatabase db) {
+        createSearchIndex(db);
+        db.execSQL("INSERT INTO " + Tables.ITEMS_FTS + "(" + Tables.ITEMS_FTS + ") VALUES('rebuild')");
+    }
+
+    /** Version 8: photo colors, filled in by {@link PaletteExtractor} after the next sync. */
+    private static void upgradeToVersion8(SQLiteDatabase db) {
+        addPaletteColumns(db);
+    }
+
+    /**
+     * Kept out of {@link #createItemsTable}, which the version 5 step also uses to rebuild the
+     * table before these columns exist. The search triggers only fire on the searchable columns,
+     * so writing colors leaves the index alone.
+     */
+    private static void addPaletteColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + Tables.ITEMS + " ADD COLUMN "
+                + ItemsContract.ItemsColumns.MUTED_COLOR + " INTEGER");
+        db.execSQL("ALTER TABLE " + Tables.ITEMS + " ADD COLUMN "
+                + ItemsContract.ItemsColumns.VIBRANT_COLOR + " INTEGER");
+    }
+
+    /**
+     * Paragraphs are written by {@link ParagraphWriter} whenever an article body is; a trigger
+     * drops them along with their article.
+     */
+    private static void createParagraphsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.PARAGRAPHS + " ("
+                + ItemsContract.ParagraphsColumns._ID + " INTEGER PRIMARY KEY,"
+                + ItemsContract.ParagraphsColumns.ITEM_ID + " INTEGER NOT NULL,"
+                + ItemsContract.ParagraphsColumns.ORDINAL + " INTEGER NOT NULL,"
+                + ItemsContract.ParagraphsColumns.TEXT + " TEXT NOT NULL"
+                + ")");
+        db.execSQL("CREATE UNIQUE INDEX " + Tables.PARAGRAPHS + "_" + ItemsContract.ParagraphsColumns.ITEM_ID
+                + " ON " + Tables.PARAGRAPHS + " (" + ItemsContract.ParagraphsColumns.ITEM_ID + ","
+                + ItemsContract.ParagraphsColumns.ORDINAL + ")");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS + "_delete_" + Tables.PARAGRAPHS
+                + " AFTER DELETE ON " + Tables.ITEMS + " BEGIN"
+                + " DELETE FROM " + Tables.PARAGRAPHS + " WHERE "
+                + ItemsContract.ParagraphsColumns.ITEM_ID + "=old." + ItemsContract.ItemsColumns._ID + ";"
+                + " END");
+    }
+
+    /**
+     * An external content FTS4 table over the searchable columns of {@link Tables#ITEMS}, so the
+     * text is not stored twice. Triggers keep the index in step with the articles; the old
+     * entry has to be removed before the article row changes, while its text can still be read.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        final String columns = TextUtils.join(",", ItemsSearch.COLUMNS);
+        final String newValues = "new." + TextUtils.join(",new.", ItemsSearch.COLUMNS);
+        final String deleteOld = " DELETE FROM " + Tables.ITEMS_FTS + " WHERE docid=old."
+                + ItemsContract.ItemsColumns._ID + "; END";
+        final String insertNew = " INSERT INTO " + Tables.ITEMS_FTS + "(docid," + columns + ")"
+                + " VALUES(new." + ItemsContract.ItemsColumns._ID + "," + newValues + "); END";
+
+        db.execSQL("CREATE VIRTUAL TABLE " + Tables.ITEMS_FTS + " USING fts4(" + columns
+                + ", content=\"" + Tables.ITEMS + "\")");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_FTS + "_before_update BEFORE UPDATE OF "
+                + columns + " ON " + Tables.ITEMS + " BEGIN" + deleteOld);
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_FTS + "_before_delete BEFORE DELETE ON "
+                + Tables.ITEMS + " BEGIN" + deleteOld);
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_FTS + "_after_update AFTER UPDATE OF "
+                + columns + " ON " + Tables.ITEMS + " BEGIN" + insertNew);
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_FTS + "_after_insert AFTER INSERT ON "
+                + Tables.ITEMS + " BEGIN" + insertNew);
+    }
+
+    /** Sync upserts by server id, so each article may only be stored once. */
+    private static void createServerIdIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX " + Tables.ITEMS + "_" + ItemsContract.ItemsColumns.SERVER_ID
+                + " ON " + Tables.ITEMS + " (" + ItemsContract.ItemsColumns.SERVER_ID + ")");
+    }
+
+    /**
+     * Lets {@link ItemsContract.Items#DEFAULT_SORT} walk the index instead of sorting the table.
+     * The rowid is implicitly the last key, which also orders ties by {@code _id}.
+     */
+    private static void createPublishedDateIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + Tables.ITEMS + "_" + ItemsContract.ItemsColumns.PUBLISHED_DATE
+                + " ON " + Tables.ITEMS + " (" + ItemsContract.ItemsColumns.PUBLISHED_DATE + ")");
     }
 }
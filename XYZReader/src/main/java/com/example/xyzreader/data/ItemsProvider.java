@@ -8,22 +8,38 @@ import android.content.ContentValues;
 import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ItemsProvider extends ContentProvider {
+	private static final String TAG = "ItemsProvider";
+
+	private static final AtomicLong sCoalescedNotifications = new AtomicLong();
+
 	private SQLiteOpenHelper mOpenHelper;
+	private final ThreadLocal<PendingNotifications> mPendingNotifications =
+			new ThreadLocal<PendingNotifications>();
 
 	interface Tables {
 		String ITEMS = "items";
+		String PARAGRAPHS = "paragraphs";
+		String ITEMS_FTS = "items_fts";
 	}
 
 	private static final int ITEMS = 0;
 	private static final int ITEMS__ID = 1;
+	private static final int ITEMS__ID__PARAGRAPHS = 2;
+	private static final int ITEMS__SEARCH = 3;
 
 	private static final UriMatcher sUriMatcher = buildUriMatcher();
 
@@ -31,7 +47,9 @@ public class ItemsProvider extends ContentProvider {
 		final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
 		final String authority = ItemsContract.CONTENT_AUTHORITY;
 		matcher.addURI(authority, "items", ITEMS);
+		matcher.addURI(authority, "items/search", ITEMS__SEARCH);
 		matcher.addURI(authority, "items/#", ITEMS__ID);
+		matcher.addURI(authority, "items/#/paragraphs", ITEMS__ID__PARAGRAPHS);
 		return matcher;
 	}
 
@@ -49,16 +67,53 @@ public class ItemsProvider extends ContentProvider {
 				return ItemsContract.Items.CONTENT_TYPE;
 			case ITEMS__ID:
 				return ItemsContract.Items.CONTENT_ITEM_TYPE;
+			case ITEMS__ID__PARAGRAPHS:
+				return ItemsContract.Paragraphs.CONTENT_TYPE;
+			case ITEMS__SEARCH:
+				return ItemsContract.Search.CONTENT_TYPE;
 			default:
 				throw new UnsupportedOperationException("Unknown uri: " + uri);
 		}
 	}
 
+	/**
+	 * Reads the {@link ItemsContract#QUERY_PARAMETER_LIMIT} of a URI, capped at {@code max}.
+	 * Returns {@code fallback} when it is missing, not a number or not positive.
+	 */
+	private static int parseLimit(Uri uri, int fallback, int max) {
+		final String limit = uri.getQueryParameter(ItemsContract.QUERY_PARAMETER_LIMIT);
+		if (limit == null) {
+			return fallback;
+		}
+		int rows;
+		try {
+			rows = Integer.parseInt(limit.trim());
+		} catch (NumberFormatException e) {
+			rows = 0;
+		}
+		if (rows <= 0) {
+			Log.w(TAG, "Ignoring bad limit " + limit + " in " + uri);
+			return fallback;
+		}
+		return Math.min(rows, max);
+	}
+
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
 		final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
-		final SelectionBuilder builder = buildSelection(uri);
-		Cursor cursor = builder.where(selection, selectionArgs).query(db, projection, sortOrder);
+		Cursor cursor;
+		if (sUriMatcher.match(uri) == ITEMS__SEARCH) {
+			// Ranked by relevance; selection and sort order do not apply.
+			cursor = ItemsSearch.query(db,
+					uri.getQueryParameter(ItemsContract.QUERY_PARAMETER_QUERY), projection,
+					parseLimit(uri, ItemsContract.Search.DEFAULT_LIMIT, ItemsSearch.MAX_LIMIT));
+		} else {
+			final int limit = parseLimit(uri, 0, Integer.MAX_VALUE);
+			final SelectionBuilder builder = buildSelection(uri);
+			cursor = builder.where(selection, selectionArgs)
+					.query(db, projection, null, null, sortOrder,
+							limit > 0 ? Integer.toString(limit) : null);
+		}
         if (cursor != null) {
             cursor.setNotificationUri(getContext().getContentResolver(), uri);
         }
@@ -71,8 +126,21 @@ public class ItemsProvider extends ContentProvider {
 		final int match = sUriMatcher.match(uri);
 		switch (match) {
 			case ITEMS: {
-				final long _id = db.insertOrThrow(Tables.ITEMS, null, values);
-                getContext().getContentResolver().notifyChange(uri, null);
+				final long _id;
+				db.beginTransactionNonExclusive();
+				try {
+					_id = db.insertOrThrow(Tables.ITEMS, null, values);
+					final ParagraphWriter writer = new ParagraphWriter(db);
+					try {
+						writer.write(_id, values.getAsString(ItemsContract.Items.BODY));
+					} finally {
+						writer.close();
+					}
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+				}
+				notifyChange(uri);
 				return ItemsContract.Items.buildItemUri(_id);
 			}
 			default: {
@@ -84,17 +152,109 @@ public class ItemsProvider extends ContentProvider {
 	@Override
 	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final SelectionBuilder builder = buildSelection(uri);
-        getContext().getContentResolver().notifyChange(uri, null);
-		return builder.where(selection, selectionArgs).update(db, values);
+		final SelectionBuilder builder = buildWritableSelection(uri).where(selection, selectionArgs);
+		final int count;
+		if (values.containsKey(ItemsContract.Items.BODY)) {
+			// A new body means new paragraphs for every article it is written to.
+			db.beginTransactionNonExclusive();
+			try {
+				final long[] ids = queryIds(db, builder);
+				count = builder.update(db, values);
+				final ParagraphWriter writer = new ParagraphWriter(db);
+				try {
+					for (long id : ids) {
+						writer.write(id, values.getAsString(ItemsContract.Items.BODY));
+					}
+				} finally {
+					writer.close();
+				}
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
+		} else {
+			count = builder.update(db, values);
+		}
+		if (count > 0) {
+			notifyChange(uri);
+		}
+		return count;
 	}
 
 	@Override
 	public int delete(Uri uri, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final SelectionBuilder builder = buildSelection(uri);
-        getContext().getContentResolver().notifyChange(uri, null);
-		return builder.where(selection, selectionArgs).delete(db);
+		final SelectionBuilder builder = buildWritableSelection(uri);
+		final int count = builder.where(selection, selectionArgs).delete(db);
+		if (count > 0) {
+			notifyChange(uri);
+		}
+		return count;
+	}
+
+	/**
+	 * Notifies observers of {@code uri}, or holds the notification back until the end of the
+	 * batch running on the calling thread.
+	 */
+	private void notifyChange(Uri uri) {
+		final PendingNotifications pending = mPendingNotifications.get();
+		if (pending != null) {
+			pending.add(uri);
+		} else {
+			getContext().getContentResolver().notifyChange(uri, null);
+		}
+	}
+
+	/**
+	 * Starts holding back change notifications on the calling thread. Returns {@code false} if a
+	 * batch is already active, in which case it is the outer batch that delivers them.
+	 */
+	private boolean beginNotificationBatch() {
+		if (mPendingNotifications.get() != null) {
+			return false;
+		}
+		mPendingNotifications.set(new PendingNotifications());
+		return true;
+	}
+
+	/**
+	 * Stops holding back change notifications on the calling thread. If the batch's transaction
+	 * was committed, delivers one notification per distinct URI held back since
+	 * {@link #beginNotificationBatch()}; after a rollback nothing changed, so they are dropped.
+	 */
+	private void endNotificationBatch(boolean committed) {
+		final PendingNotifications pending = mPendingNotifications.get();
+		mPendingNotifications.remove();
+		if (!committed) {
+			return;
+		}
+		for (Uri uri : pending.uris) {
+			getContext().getContentResolver().notifyChange(uri, null);
+		}
+		final int saved = pending.requested - pending.uris.size();
+		if (saved > 0) {
+			final long total = sCoalescedNotifications.addAndGet(saved);
+			Log.d(TAG, "Coalesced " + pending.requested + " change notifications into "
+					+ pending.uris.size() + " (" + total + " saved since start)");
+		}
+	}
+
+	/**
+	 * Returns how many change notifications, and so loader re-queries per observer, batching has
+	 * saved since the process started.
+	 */
+	public static long getCoalescedNotificationCount() {
+		return sCoalescedNotifications.get();
+	}
+
+	private static class PendingNotifications {
+		final Set<Uri> uris = new LinkedHashSet<Uri>();
+		int requested;
+
+		void add(Uri uri) {
+			requested++;
+			uris.add(uri);
+		}
 	}
 
 	private SelectionBuilder buildSelection(Uri uri) {
@@ -103,6 +263,30 @@ public class ItemsProvider extends ContentProvider {
 		return buildSelection(uri, match, builder);
 	}
 
+	/**
+	 * Paragraphs and search results follow their articles and cannot be written directly.
+	 */
+	private SelectionBuilder buildWritableSelection(Uri uri) {
+		final int match = sUriMatcher.match(uri);
+		if (match == ITEMS__ID__PARAGRAPHS || match == ITEMS__SEARCH) {
+			throw new UnsupportedOperationException("Read-only uri: " + uri);
+		}
+		return buildSelection(uri, match, new SelectionBuilder());
+	}
+
+	private static long[] queryIds(SQLiteDatabase db, SelectionBuilder builder) {
+		final Cursor cursor = builder.query(db, new String[]{ItemsContract.Items._ID}, null);
+		try {
+			final long[] ids = new long[cursor.getCount()];
+			for (int i = 0; cursor.moveToNext(); i++) {
+				ids[i] = cursor.getLong(0);
+			}
+			return ids;
+		} finally {
+			cursor.close();
+		}
+	}
+
 	private SelectionBuilder buildSelection(Uri uri, int match, SelectionBuilder builder) {
 		final List<String> paths = uri.getPathSegments();
 		switch (match) {
@@ -113,31 +297,124 @@ public class ItemsProvider extends ContentProvider {
 				final String _id = paths.get(1);
 				return builder.table(Tables.ITEMS).where(ItemsContract.Items._ID + "=?", _id);
 			}
+			case ITEMS__ID__PARAGRAPHS: {
+				final String itemId = paths.get(1);
+				return builder.table(Tables.PARAGRAPHS)
+						.where(ItemsContract.Paragraphs.ITEM_ID + "=?", itemId);
+			}
 			default: {
 				throw new UnsupportedOperationException("Unknown uri: " + uri);
 			}
 		}
 	}
 
+    /**
+     * Insert the given rows inside a single {@link SQLiteDatabase} transaction, reusing one
+     * compiled {@link SQLiteStatement} for as long as consecutive rows carry the same columns.
+     * Each article's paragraphs are written along with it.
+     * Change observers are notified once for the whole set. All rows will be rolled back if any
+     * single one fails.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        if (sUriMatcher.match(uri) != ITEMS) {
+            return super.bulkInsert(uri, values);
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        SQLiteStatement statement = null;
+        String[] columns = null;
+        final ParagraphWriter writer = new ParagraphWriter(db);
+        final boolean notificationBatch = beginNotificationBatch();
+        boolean successful = false;
+        db.beginTransactionNonExclusive();
+        try {
+            for (ContentValues row : values) {
+                if (columns == null || !hasColumns(row, columns)) {
+                    if (statement != null) {
+                        statement.close();
+                    }
+                    columns = row.keySet().toArray(new String[row.size()]);
+                    statement = db.compileStatement(buildInsertSql(Tables.ITEMS, columns));
+                }
+                statement.clearBindings();
+                for (int i = 0; i < columns.length; i++) {
+                    DatabaseUtils.bindObjectToProgram(statement, i + 1, row.get(columns[i]));
+                }
+                final long _id = statement.executeInsert();
+                writer.write(_id, row.getAsString(ItemsContract.Items.BODY));
+            }
+            if (values.length > 0) {
+                notifyChange(uri);
+            }
+            db.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            writer.close();
+            db.endTransaction();
+            if (notificationBatch) {
+                endNotificationBatch(successful);
+            }
+        }
+        return values.length;
+    }
+
+    private static boolean hasColumns(ContentValues row, String[] columns) {
+        if (row.size() != columns.length) {
+            return false;
+        }
+        for (String column : columns) {
+            if (!row.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String buildInsertSql(String table, String[] columns) {
+        final StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+
     /**
      * Apply the given set of {@link ContentProviderOperation}, executing inside
      * a {@link SQLiteDatabase} transaction. All changes will be rolled back if
-     * any single one fails.
+     * any single one fails, so a batch is never seen half applied; callers that
+     * must not hold up readers send small batches, each committed on its own.
+     * Change notifications are held back and delivered once per affected URI
+     * after the commit, or dropped if the batch fails.
      */
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
             throws OperationApplicationException {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.beginTransaction();
+        final boolean notificationBatch = beginNotificationBatch();
+        boolean successful = false;
+        db.beginTransactionNonExclusive();
         try {
             final int numOperations = operations.size();
             final ContentProviderResult[] results = new ContentProviderResult[numOperations];
             for (int i = 0; i < numOperations; i++) {
-                results[i] = operations.get(i).apply(this, results, i);
+                final ContentProviderOperation operation = operations.get(i);
+                results[i] = operation.apply(this, results, i);
             }
             db.setTransactionSuccessful();
+            successful = true;
             return results;
         } finally {
             db.endTransaction();
+            if (notificationBatch) {
+                endNotificationBatch(successful);
+            }
         }
     }
 }
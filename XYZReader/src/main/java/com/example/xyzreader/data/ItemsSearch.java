@@ -0,0 +1,274 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+
+import static com.example.xyzreader.data.ItemsProvider.Tables;
+
+/**
+ * Full-text search over the title, author and body of articles, backed by the
+ * {@link Tables#ITEMS_FTS} index.
+ * <p>
+ * Android's SQLite has no ranking function, so ranking happens here in two passes: the first
+ * reads only the docid and {@code matchinfo()} of every match and scores them with BM25, the
+ * second reads the requested columns and snippets of the best {@code limit} matches alone.
+ */
+final class ItemsSearch {
+    private static final String TAG = "ItemsSearch";
+
+    /** Indexed columns, in the order of the FTS table. */
+    static final String[] COLUMNS = {
+            ItemsContract.Items.TITLE,
+            ItemsContract.Items.AUTHOR,
+            ItemsContract.Items.BODY,
+    };
+    /** A match in the title counts most, then in the author, then in the body. */
+    private static final double[] COLUMN_WEIGHTS = {3.0, 2.0, 1.0};
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    /** Keeps the second pass under SQLite's limit of 999 bound arguments. */
+    static final int MAX_LIMIT = 500;
+
+    private static final String MATCHINFO_FORMAT = "pcnalx";
+    private static final int SNIPPET_TOKENS = 16;
+
+    /** Characters at the ends of a word that the FTS "simple" tokenizer does not keep. */
+    private static final Pattern WORD_EDGES =
+            Pattern.compile("^[^A-Za-z0-9\\u0080-\\uffff]+|[^A-Za-z0-9\\u0080-\\uffff]+$");
+
+    private static final String[] DEFAULT_PROJECTION = {
+            ItemsContract.Search._ID,
+            ItemsContract.Search.TITLE,
+            ItemsContract.Search.AUTHOR,
+            ItemsContract.Search.PUBLISHED_DATE,
+            ItemsContract.Search.THUMB_URL,
+            ItemsContract.Search.PHOTO_URL,
+            ItemsContract.Search.ASPECT_RATIO,
+            ItemsContract.Search.SNIPPET,
+            ItemsContract.Search.RANK,
+    };
+
+    private ItemsSearch() {
+    }
+
+    /**
+     * Returns the best {@code limit} articles matching the plain text {@code query}, most
+     * relevant first; {@code limit} is capped at {@link #MAX_LIMIT}. {@code projection} may
+     * name any article column as well as the {@link ItemsContract.SearchColumns}.
+     */
+    static Cursor query(SQLiteDatabase db, String query, String[] projection, int limit) {
+        if (projection == null) {
+            projection = DEFAULT_PROJECTION;
+        }
+        final MatrixCursor result = new MatrixCursor(projection);
+        final String match = toMatchExpression(query);
+        if (match == null) {
+            return result;
+        }
+
+        final long startMillis = SystemClock.elapsedRealtime();
+        final Match[] matches = rank(db, match);
+        final int count = Math.min(Math.min(limit, MAX_LIMIT), matches.length);
+        if (count == 0) {
+            return result;
+        }
+
+        final HashMap<Long, Integer> positions = new HashMap<Long, Integer>(count * 2);
+        final String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            positions.put(matches[i].docid, i);
+            ids[i] = Long.toString(matches[i].docid);
+        }
+
+        // Matches are filled in by rank, whatever order the second pass returns them in.
+        final Object[][] rows = new Object[count][];
+        final int rankColumn = Arrays.asList(projection).indexOf(ItemsContract.Search.RANK);
+        final String[] columns = Arrays.copyOf(projection, projection.length + 1);
+        columns[projection.length] = Tables.ITEMS + "." + ItemsContract.Items._ID;
+        final Cursor cursor = buildDetailSelection()
+                .where(Tables.ITEMS_FTS + " MATCH ?", match)
+                .where(Tables.ITEMS + "." + ItemsContract.Items._ID
+                        + " IN (" + placeholders(ids.length) + ")", ids)
+                .query(db, columns, null);
+        try {
+            while (cursor.moveToNext()) {
+                final int position = positions.get(cursor.getLong(projection.length));
+                final Object[] row = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    row[i] = i == rankColumn ? matches[position].score : getValue(cursor, i);
+                }
+                rows[position] = row;
+            }
+        } finally {
+            cursor.close();
+        }
+        for (Object[] row : rows) {
+            // A row deleted between the passes is simply left out.
+            if (row != null) {
+                result.addRow(row);
+            }
+        }
+
+        Log.d(TAG, "Ranked " + matches.length + " matches for \"" + query + "\" in "
+                + (SystemClock.elapsedRealtime() - startMillis) + " ms");
+        return result;
+    }
+
+    /**
+     * Turns text typed by the user into an FTS query that cannot be malformed: every word must
+     * appear, and the last one may still be incomplete. Each word is quoted, so operators such as
+     * {@code NEAR}, {@code OR} or {@code -} are searched for as plain text. Punctuation is
+     * trimmed off the ends of words, and words left empty, like a lone {@code -}, are dropped:
+     * they hold no token, so they would keep anything from matching, and a trailing one would
+     * take the prefix off the last word. Returns {@code null} if no word is left.
+     */
+    static String toMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        final StringBuilder match = new StringBuilder();
+        for (String word : query.replaceAll("[\"*]", " ").trim().split("\\s+")) {
+            word = WORD_EDGES.matcher(word).replaceAll("");
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(word).append('"');
+        }
+        if (match.length() == 0) {
+            return null;
+        }
+        return match.insert(match.length() - 1, '*').toString();
+    }
+
+    private static final class Match {
+        final long docid;
+        final double score;
+
+        Match(long docid, double score) {
+            this.docid = docid;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Scores every match, best first.
+     */
+    private static Match[] rank(SQLiteDatabase db, String match) {
+        final Cursor cursor = db.rawQuery("SELECT docid, matchinfo(" + Tables.ITEMS_FTS + ", '"
+                + MATCHINFO_FORMAT + "') FROM " + Tables.ITEMS_FTS + " WHERE " + Tables.ITEMS_FTS
+                + " MATCH ?", new String[]{match});
+        final Match[] matches;
+        try {
+            matches = new Match[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                matches[i] = new Match(cursor.getLong(0), bm25(cursor.getBlob(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        Arrays.sort(matches, new Comparator<Match>() {
+            @Override
+            public int compare(Match a, Match b) {
+                return Double.compare(b.score, a.score);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Okapi BM25 over a {@code matchinfo(..., 'pcnalx')} blob, weighted per column. Higher scores
+     * are more relevant.
+     */
+    static double bm25(byte[] blob) {
+        final ByteBuffer info = ByteBuffer.wrap(blob).order(ByteOrder.nativeOrder());
+        final int phrases = info.getInt(0);
+        final int columns = info.getInt(4);
+        final long rows = info.getInt(8) & 0xffffffffL;
+        // Per column: average tokens across the table ('a'), then tokens in this row ('l').
+        final int averageOffset = 3;
+        final int lengthOffset = averageOffset + columns;
+        final int hitsOffset = lengthOffset + columns;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                final int hits = hitsOffset + 3 * (phrase * columns + column);
+                final long frequency = intAt(info, hits);
+                if (frequency == 0) {
+                    continue;
+                }
+                final long documents = intAt(info, hits + 2);
+                // Floored so a term in most articles still counts for a little.
+                final double idf = Math.max(0.01,
+                        Math.log((rows - documents + 0.5) / (documents + 0.5)));
+                final double length = intAt(info, lengthOffset + column);
+                final double average = Math.max(1, intAt(info, averageOffset + column));
+                score += COLUMN_WEIGHTS[column] * idf * frequency * (BM25_K1 + 1)
+                        / (frequency + BM25_K1 * (1 - BM25_B + BM25_B * length / average));
+            }
+        }
+        return score;
+    }
+
+    private static long intAt(ByteBuffer info, int index) {
+        return info.getInt(index * 4) & 0xffffffffL;
+    }
+
+    /**
+     * Joins the FTS index with the articles, mapping the search-only columns to the FTS
+     * auxiliary functions. Snippets mark matches with {@code <b>} tags, ready for
+     * {@link android.text.Html}; offsets are the raw {@code offsets()} string.
+     */
+    private static SelectionBuilder buildDetailSelection() {
+        final SelectionBuilder builder = new SelectionBuilder()
+                .table(Tables.ITEMS_FTS + " JOIN " + Tables.ITEMS + " ON " + Tables.ITEMS + "."
+                        + ItemsContract.Items._ID + "=" + Tables.ITEMS_FTS + ".docid")
+                .map(ItemsContract.Search.SNIPPET, "snippet(" + Tables.ITEMS_FTS
+                        + ", '<b>', '</b>', '…', -1, " + SNIPPET_TOKENS + ")")
+                .map(ItemsContract.Search.OFFSETS, "offsets(" + Tables.ITEMS_FTS + ")")
+                // Filled in from the first pass.
+                .map(ItemsContract.Search.RANK, "NULL");
+        for (String column : COLUMNS) {
+            builder.mapToTable(column, Tables.ITEMS);
+        }
+        builder.mapToTable(ItemsContract.Items._ID, Tables.ITEMS);
+        return builder;
+    }
+
+    private static Object getValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            default:
+                return cursor.getString(column);
+        }
+    }
+
+    private static String placeholders(int count) {
+        final String[] marks = new String[count];
+        Arrays.fill(marks, "?");
+        return TextUtils.join(",", marks);
+    }
+}
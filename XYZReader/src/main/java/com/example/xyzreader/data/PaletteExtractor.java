@@ -0,0 +1,197 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.palette.graphics.Palette;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+import com.example.xyzreader.R;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Stores the muted and vibrant colors of the newest article photos not analyzed yet, so the
+ * detail page can read its color along with the rest of the row instead of computing a
+ * {@link Palette} while binding.
+ * <p>
+ * Only photos already in Glide's disk cache are used, downloaded by {@link ImageWarmUp} within
+ * its byte budget or by the detail page, so this never touches the network. At most
+ * {@code R.integer.palette_max_per_run} rows are looked at per run. Photos are decoded by Glide
+ * at {@link #BITMAP_SIZE} pixels, which is plenty for a palette, and analyzed on the caller's
+ * thread, which must not be the main thread. A photo not cached yet is left for a later run; one
+ * that is cached but cannot be decoded is stored as {@link Article#NO_COLOR}, so it is not tried
+ * again until its row changes. A row whose photo changes while it is analyzed is left for the
+ * next run.
+ */
+public class PaletteExtractor {
+    private static final String TAG = "PaletteExtractor";
+
+    /** Longest side of the bitmaps decoded for analysis. */
+    private static final int BITMAP_SIZE = 128;
+    /** Photos loading at once. */
+    private static final int PARALLELISM = 2;
+
+    private static final String[] PROJECTION = {
+            ItemsContract.Items._ID,
+            ItemsContract.Items.PHOTO_URL,
+    };
+
+    private final Context mContext;
+    private final int mCommitChunkSize;
+    private final int mMaxPerRun;
+
+    public PaletteExtractor(Context context) {
+        mContext = context.getApplicationContext();
+        mCommitChunkSize = context.getResources().getInteger(R.integer.sync_commit_chunk_size);
+        mMaxPerRun = context.getResources().getInteger(R.integer.palette_max_per_run);
+    }
+
+    /**
+     * Analyzes the pending photos, blocking until their colors are stored.
+     */
+    public void run() {
+        if (mMaxPerRun <= 0) {
+            return;
+        }
+        final Cursor cursor = mContext.getContentResolver().query(
+                ItemsContract.Items.buildDirUri(mMaxPerRun), PROJECTION, ItemsContract.Items.MUTED_COLOR + " IS NULL", null,
+                ItemsContract.Items.DEFAULT_SORT);
+        if (cursor == null) {
+            return;
+        }
+
+        // Small bitmaps only analyzed once: neither worth a memory cache slot nor a disk cache
+        // entry of their own, and never hardware bitmaps, whose pixels cannot be read.
+        final RequestOptions options = new RequestOptions()
+                .onlyRetrieveFromCache(true)
+                .diskCacheStrategy(DiskCacheStrategy.DATA)
+                .skipMemoryCache(true)
+                .disallowHardwareConfig();
+        final RequestManager requestManager = Glide.with(mContext);
+        final ArrayList<ContentProviderOperation> cpo = new ArrayList<ContentProviderOperation>();
+        final ArrayDeque<Pending> inFlight = new ArrayDeque<Pending>();
+        final long startMillis = SystemClock.elapsedRealtime();
+        final int pendingCount = cursor.getCount();
+        int analyzed = 0;
+        int failed = 0;
+        try {
+            while (cursor.moveToNext() && !Thread.currentThread().isInterrupted()) {
+                if (inFlight.size() >= PARALLELISM) {
+                    final Outcome outcome = analyze(requestManager, inFlight.poll(), cpo);
+                    analyzed += outcome == Outcome.ANALYZED ? 1 : 0;
+                    failed += outcome == Outcome.FAILED ? 1 : 0;
+                }
+                final String photoUrl = cursor.getString(1);
+                inFlight.add(new Pending(cursor.getLong(0), photoUrl, requestManager
+                        .asBitmap()
+                        .load(photoUrl)
+                        .apply(options)
+                        .submit(BITMAP_SIZE, BITMAP_SIZE)));
+                if (cpo.size() >= mCommitChunkSize) {
+                    flush(cpo);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                final Outcome outcome = analyze(requestManager, inFlight.poll(), cpo);
+                analyzed += outcome == Outcome.ANALYZED ? 1 : 0;
+                failed += outcome == Outcome.FAILED ? 1 : 0;
+            }
+            flush(cpo);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(TAG, "Error storing photo colors.", e);
+        } finally {
+            cursor.close();
+            for (Pending pending : inFlight) {
+                requestManager.clear(pending.target);
+            }
+        }
+
+        Log.i(TAG, "Analyzed " + analyzed + " of " + pendingCount + " photos in "
+                + (SystemClock.elapsedRealtime() - startMillis) + " ms; " + failed
+                + " could not be decoded.");
+    }
+
+    private enum Outcome {
+        ANALYZED,
+        /** Not in the cache yet; left for a later run. */
+        NOT_CACHED,
+        /** Cached but undecodable; recorded so it is not retried. */
+        FAILED,
+        INTERRUPTED,
+    }
+
+    /**
+     * Waits for a photo and queues its colors to be stored, or {@link Article#NO_COLOR} if its
+     * cached data could not be decoded.
+     */
+    private static Outcome analyze(RequestManager requestManager, Pending pending,
+                                   ArrayList<ContentProviderOperation> cpo) {
+        int mutedColor = Article.NO_COLOR;
+        int vibrantColor = Article.NO_COLOR;
+        Outcome outcome;
+        try {
+            final Palette palette = Palette.from(pending.target.get()).generate();
+            mutedColor = palette.getMutedColor(Article.NO_COLOR);
+            vibrantColor = palette.getVibrantColor(Article.NO_COLOR);
+            outcome = Outcome.ANALYZED;
+        } catch (ExecutionException e) {
+            // A cache miss fails without a cause; a decode failure carries one.
+            if (!(e.getCause() instanceof GlideException)
+                    || ((GlideException) e.getCause()).getRootCauses().isEmpty()) {
+                return Outcome.NOT_CACHED;
+            }
+            Log.w(TAG, "Could not decode " + pending.photoUrl);
+            outcome = Outcome.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.INTERRUPTED;
+        } finally {
+            // Hands the bitmap back to Glide's pool; the palette has been read from it already.
+            requestManager.clear(pending.target);
+        }
+
+        // Through the dir URI, so a whole batch notifies its observers once.
+        cpo.add(ContentProviderOperation.newUpdate(ItemsContract.Items.buildDirUri())
+                .withSelection(ItemsContract.Items._ID + "=? AND "
+                                + ItemsContract.Items.PHOTO_URL + "=?",
+                        new String[]{Long.toString(pending.id), pending.photoUrl})
+                .withValue(ItemsContract.Items.MUTED_COLOR, mutedColor)
+                .withValue(ItemsContract.Items.VIBRANT_COLOR, vibrantColor)
+                .build());
+        return outcome;
+    }
+
+    private void flush(ArrayList<ContentProviderOperation> cpo)
+            throws RemoteException, OperationApplicationException {
+        if (!cpo.isEmpty()) {
+            mContext.getContentResolver().applyBatch(ItemsContract.CONTENT_AUTHORITY, cpo);
+            cpo.clear();
+        }
+    }
+
+    private static class Pending {
+        final long id;
+        final String photoUrl;
+        final FutureTarget<Bitmap> target;
+
+        Pending(long id, String photoUrl, FutureTarget<Bitmap> target) {
+            this.id = id;
+            this.photoUrl = photoUrl;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.xyzreader.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.regex.Pattern;
+
+import static com.example.xyzreader.data.ItemsProvider.Tables;
+
+/**
+ * Splits article bodies into rows of the paragraphs table, so detail screens never have to split
+ * a body themselves. Holds compiled statements; reuse one writer for a batch of articles and
+ * close it afterwards. Must be used inside a transaction.
+ */
+class ParagraphWriter {
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\r\\n\\r\\n|\\n\\n");
+
+    private final SQLiteStatement mDelete;
+    private final SQLiteStatement mInsert;
+
+    ParagraphWriter(SQLiteDatabase db) {
+        mDelete = db.compileStatement("DELETE FROM " + Tables.PARAGRAPHS
+                + " WHERE " + ItemsContract.Paragraphs.ITEM_ID + "=?");
+        mInsert = db.compileStatement("INSERT INTO " + Tables.PARAGRAPHS + " ("
+                + ItemsContract.Paragraphs.ITEM_ID + ","
+                + ItemsContract.Paragraphs.ORDINAL + ","
+                + ItemsContract.Paragraphs.TEXT + ") VALUES (?,?,?)");
+    }
+
+    /**
+     * Replaces the paragraphs stored for an article with those of {@code body}.
+     */
+    void write(long itemId, String body) {
+        mDelete.bindLong(1, itemId);
+        mDelete.executeUpdateDelete();
+        if (body == null) {
+            return;
+        }
+
+        final String[] paragraphs = PARAGRAPH_BREAK.split(body);
+        for (int ordinal = 0; ordinal < paragraphs.length; ordinal++) {
+            mInsert.bindLong(1, itemId);
+            mInsert.bindLong(2, ordinal);
+            mInsert.bindString(3, paragraphs[ordinal]);
+            mInsert.executeInsert();
+        }
+    }
+
+    void close() {
+        mDelete.close();
+        mInsert.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.xyzreader.data;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Runs the periodic sync scheduled by {@link SyncScheduler} on a background thread. A failed
+ * sync, or one stopped because its constraints no longer hold before the feed was stored, is
+ * retried with the job's backoff.
+ */
+public class SyncJobService extends JobService {
+
+    private Thread mThread;
+    // Set once the system has stopped the job; it must not be finished after that.
+    private volatile boolean mStopped;
+    // Set once the feed is stored, after which only the cache warm-up is left to lose.
+    private volatile boolean mSynced;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final long requestMillis = SystemClock.elapsedRealtime();
+        mStopped = false;
+        mSynced = false;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final FeedSync sync = new FeedSync(SyncJobService.this);
+                final FeedSync.Result result = sync.syncFeed(requestMillis);
+                mSynced = result != FeedSync.Result.FAILED;
+                sync.warmCaches(result);
+                if (!mStopped) {
+                    jobFinished(params, !mSynced);
+                }
+            }
+        }, "SyncJobService");
+        mThread.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Stops the cache warm-up between images; a feed already being stored is finished.
+        mStopped = true;
+        mThread.interrupt();
+        // A sync still in flight may yet succeed; its retry then costs a 304 at most.
+        return !mSynced;
+    }
+}
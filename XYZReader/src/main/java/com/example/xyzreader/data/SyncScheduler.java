@@ -0,0 +1,104 @@
+package com.example.xyzreader.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.xyzreader.R;
+
+/**
+ * Decides when the feed is synced. From Lollipop on, a periodic {@link SyncJobService} job keeps
+ * the articles fresh in the background under the network and charging constraints from
+ * config.xml, with exponential backoff after failures. At launch, the app only syncs in the
+ * foreground if the last successful sync is older than
+ * {@code R.integer.sync_freshness_interval_minutes}, which before Lollipop is the only sync
+ * there is.
+ */
+public final class SyncScheduler {
+    private static final String TAG = "SyncScheduler";
+
+    private static final int SYNC_JOB_ID = 1;
+
+    private static final String PREFS_NAME = "sync";
+    private static final String PREF_LAST_SYNC_MILLIS = "last_sync_millis";
+
+    private SyncScheduler() {
+    }
+
+    /**
+     * Schedules the periodic sync job, unless it is already scheduled. The job survives reboots.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        final JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        // Scheduling again would restart the period, so a launch every few minutes would keep
+        // the job from ever running.
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == SYNC_JOB_ID) {
+                return;
+            }
+        }
+
+        final Resources res = context.getResources();
+        final JobInfo job = new JobInfo.Builder(SYNC_JOB_ID,
+                new ComponentName(context, SyncJobService.class))
+                .setPeriodic(res.getInteger(R.integer.sync_freshness_interval_minutes) * 60000L)
+                .setRequiredNetworkType(res.getBoolean(R.bool.sync_requires_unmetered)
+                        ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresCharging(res.getBoolean(R.bool.sync_requires_charging))
+                .setBackoffCriteria(res.getInteger(R.integer.sync_initial_backoff_seconds) * 1000L,
+                        JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Could not schedule the sync job.");
+        }
+    }
+
+    /**
+     * Starts a foreground sync if the stored articles are stale. Returns whether one was started.
+     */
+    public static boolean syncIfStale(Context context) {
+        if (!isStale(context)) {
+            return false;
+        }
+        context.startService(new Intent(context, UpdaterService.class)
+                .putExtra(UpdaterService.EXTRA_REQUEST_TIME, SystemClock.elapsedRealtime()));
+        return true;
+    }
+
+    /**
+     * Returns whether the last successful sync is older than the freshness interval. A clock
+     * set back past the last sync counts as stale too.
+     */
+    public static boolean isStale(Context context) {
+        final long lastSync = getPreferences(context).getLong(PREF_LAST_SYNC_MILLIS, 0);
+        final long age = System.currentTimeMillis() - lastSync;
+        final long freshness = context.getResources()
+                .getInteger(R.integer.sync_freshness_interval_minutes) * 60000L;
+        return lastSync == 0 || age < 0 || age >= freshness;
+    }
+
+    /**
+     * Records a successful sync, which keeps the data fresh for the freshness interval.
+     */
+    static void markSynced(Context context) {
+        getPreferences(context).edit()
+                .putLong(PREF_LAST_SYNC_MILLIS, System.currentTimeMillis())
+                .apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -1,25 +1,15 @@
 package com.example.xyzreader.data;
 
 import android.app.IntentService;
-import android.content.ContentProviderOperation;
-import android.content.ContentValues;
 import android.content.Intent;
-import android.content.OperationApplicationException;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.net.Uri;
-import android.os.RemoteException;
-import android.text.format.Time;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.example.xyzreader.remote.RemoteEndpointUtil;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.ArrayList;
-
+/**
+ * Syncs the feed when the app asks for it, broadcasting {@link #BROADCAST_ACTION_STATE_CHANGE}
+ * around the fetch so the list can show progress. Scheduled syncs run in
+ * {@link SyncJobService} instead.
+ */
 public class UpdaterService extends IntentService {
     private static final String TAG = "UpdaterService";
 
@@ -27,6 +17,12 @@ public class UpdaterService extends IntentService {
             = "com.example.xyzreader.intent.action.STATE_CHANGE";
     public static final String EXTRA_REFRESHING
             = "com.example.xyzreader.intent.extra.REFRESHING";
+    /**
+     * {@link SystemClock#elapsedRealtime()} at which the sync was asked for. Requests already
+     * covered by a sync started since are not fetched again; without it, none is.
+     */
+    public static final String EXTRA_REQUEST_TIME
+            = "com.example.xyzreader.intent.extra.REQUEST_TIME";
 
     public UpdaterService() {
         super(TAG);
@@ -34,11 +30,8 @@ public class UpdaterService extends IntentService {
 
     @Override
     protected void onHandleIntent(Intent intent) {
-        Time time = new Time();
-
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
-        NetworkInfo ni = cm.getActiveNetworkInfo();
-        if (ni == null || !ni.isConnected()) {
+        FeedSync sync = new FeedSync(this);
+        if (!sync.isOnline()) {
             Log.w(TAG, "Not online, not refreshing.");
             return;
         }
@@ -46,41 +39,15 @@ public class UpdaterService extends IntentService {
         sendStickyBroadcast(
                 new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, true));
 
-        // Don't even inspect the intent, we only do one thing, and that's fetch content.
-        ArrayList<ContentProviderOperation> cpo = new ArrayList<ContentProviderOperation>();
-
-        Uri dirUri = ItemsContract.Items.buildDirUri();
-
-        // Delete all items
-        cpo.add(ContentProviderOperation.newDelete(dirUri).build());
-
-        try {
-            JSONArray array = RemoteEndpointUtil.fetchJsonArray();
-            if (array == null) {
-                throw new JSONException("Invalid parsed item array" );
-            }
-
-            for (int i = 0; i < array.length(); i++) {
-                ContentValues values = new ContentValues();
-                JSONObject object = array.getJSONObject(i);
-                values.put(ItemsContract.Items.SERVER_ID, object.getString("id" ));
-                values.put(ItemsContract.Items.AUTHOR, object.getString("author" ));
-                values.put(ItemsContract.Items.TITLE, object.getString("title" ));
-                values.put(ItemsContract.Items.BODY, object.getString("body" ));
-                values.put(ItemsContract.Items.THUMB_URL, object.getString("thumb" ));
-                values.put(ItemsContract.Items.PHOTO_URL, object.getString("photo" ));
-                values.put(ItemsContract.Items.ASPECT_RATIO, object.getString("aspect_ratio" ));
-                values.put(ItemsContract.Items.PUBLISHED_DATE, object.getString("published_date"));
-                cpo.add(ContentProviderOperation.newInsert(dirUri).withValues(values).build());
-            }
-
-            getContentResolver().applyBatch(ItemsContract.CONTENT_AUTHORITY, cpo);
-
-        } catch (JSONException | RemoteException | OperationApplicationException e) {
-            Log.e(TAG, "Error updating content.", e);
-        }
+        // We only do one thing, and that's fetch content; the intent only says when it was asked.
+        FeedSync.Result result = sync.syncFeed(
+                intent.getLongExtra(EXTRA_REQUEST_TIME, SystemClock.elapsedRealtime()));
 
         sendStickyBroadcast(
                 new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, false));
+
+        // After the broadcast: the list is usable while images download. Off this thread, so
+        // the next queued refresh does not wait for the downloads.
+        sync.warmCachesInBackground(result);
     }
 }
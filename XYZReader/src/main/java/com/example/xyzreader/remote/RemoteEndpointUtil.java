@@ -1,56 +1,117 @@
 package com.example.xyzreader.remote;
 
-import android.util.Log;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONTokener;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.JsonReader;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
 public class RemoteEndpointUtil {
-    private static final String TAG = "RemoteEndpointUtil";
+    private static final String PREFS_NAME = "remote_endpoint";
+    private static final String PREF_ETAG = "feed_etag";
+    private static final String PREF_LAST_MODIFIED = "feed_last_modified";
+
+    private static final String HTTP_CACHE_DIR = "http";
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+
+    private static OkHttpClient sClient;
 
     private RemoteEndpointUtil() {
     }
 
-    public static JSONArray fetchJsonArray() {
-        String itemsJson = null;
-        try {
-            itemsJson = fetchPlainText(Config.BASE_URL);
-        } catch (IOException e) {
-            Log.e(TAG, "Error fetching items JSON", e);
-            return null;
+    /**
+     * Returns the process-wide client. Sharing it keeps the connection pool, TLS sessions and the
+     * disk cache alive across refreshes. OkHttp negotiates gzip transparently.
+     */
+    public static synchronized OkHttpClient getClient(Context context) {
+        if (sClient == null) {
+            File cacheDir = new File(context.getApplicationContext().getCacheDir(), HTTP_CACHE_DIR);
+            sClient = new OkHttpClient.Builder()
+                    .cache(new Cache(cacheDir, HTTP_CACHE_SIZE))
+                    .build();
         }
+        return sClient;
+    }
 
-        // Parse JSON
-        try {
-            JSONTokener tokener = new JSONTokener(itemsJson);
-            Object val = tokener.nextValue();
-            if (!(val instanceof JSONArray)) {
-                throw new JSONException("Expected JSONArray");
-            }
-            return (JSONArray) val;
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing items JSON", e);
+    /**
+     * Requests the items feed, sending the validators stored by the last successful sync. The
+     * response is either successful or a {@code 304 Not Modified}, see
+     * {@link #isNotModified(Response)}. The caller must close the response body.
+     */
+    public static Response fetchFeed(Context context) throws IOException {
+        return fetchFeed(context, Config.BASE_URL);
+    }
+
+    static Response fetchFeed(Context context, URL url) throws IOException {
+        Response response = fetch(context, url);
+        if (!response.isSuccessful() && !isNotModified(response)) {
+            response.body().close();
+            throw new IOException("Unexpected response fetching items JSON: " + response);
         }
+        return response;
+    }
 
-        return null;
+    public static boolean isNotModified(Response response) {
+        return response.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
     }
 
-    static String fetchPlainText(URL url) throws IOException {
-        OkHttpClient client = new OkHttpClient();
+    /**
+     * Opens the body of a successful feed response as a streaming {@link JsonReader}, so the
+     * payload is never held in memory as a whole. Closing the reader releases the connection.
+     */
+    public static JsonReader openJsonReader(Response response) {
+        return new JsonReader(response.body().charStream());
+    }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
+    /**
+     * Remembers the validators of a feed response once its content has been stored, so the
+     * next refresh can be answered with a {@code 304 Not Modified}.
+     */
+    public static void saveValidators(Context context, Response response) {
+        getPreferences(context).edit()
+                .putString(PREF_ETAG, response.header("ETag"))
+                .putString(PREF_LAST_MODIFIED, response.header("Last-Modified"))
+                .apply();
+    }
+
+    /**
+     * Forgets the stored validators, forcing the next refresh to download the full feed.
+     */
+    public static void clearValidators(Context context) {
+        getPreferences(context).edit()
+                .remove(PREF_ETAG)
+                .remove(PREF_LAST_MODIFIED)
+                .apply();
+    }
+
+    static Response fetch(Context context, URL url) throws IOException {
+        SharedPreferences prefs = getPreferences(context);
+        Request.Builder request = new Request.Builder()
+                .url(url);
+
+        // Conditional headers set by the caller make OkHttp hand the 304 back to us instead of
+        // answering from its own cache, which is what lets us skip parsing altogether.
+        String etag = prefs.getString(PREF_ETAG, null);
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        String lastModified = prefs.getString(PREF_LAST_MODIFIED, null);
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+
+        return getClient(context).newCall(request.build()).execute();
+    }
 
-        Response response = client.newCall(request).execute();
-        return response.body().string();
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
 }
@@ -9,6 +9,7 @@ import android.database.Cursor;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.legacy.app.FragmentStatePagerAdapter;
@@ -43,13 +44,28 @@ import static com.example.xyzreader.ui.ArticleListActivity.currentPosition;
 public class ArticleDetailActivity extends AppCompatActivity
         implements LoaderManager.LoaderCallbacks<Cursor> {
 
+    /**
+     * Optional list position of the article to open. The list and the pager share one sort
+     * order, so when it is right the start page is found without scanning the cursor.
+     */
+    public static final String EXTRA_POSITION = "com.example.xyzreader.intent.extra.POSITION";
+
+    /**
+     * Optional {@link SystemClock#uptimeMillis()} of the tap that opened the article, from which
+     * the enter transition's latency is measured.
+     */
+    public static final String EXTRA_TAP_TIME = "com.example.xyzreader.intent.extra.TAP_TIME";
+
     private Cursor mCursor;
     private long mStartId;
+    private int mStartPosition = -1;
 
     private int mTopInset;
 
     private ViewPager mPager;
     private MyPagerAdapter mPagerAdapter;
+    private ArticlePrefetcher mPrefetcher;
+    private TransitionWatchdog mTransitionWatchdog;
     private View mUpButtonContainer;
     private View mUpButton;
 
@@ -59,6 +75,8 @@ public class ArticleDetailActivity extends AppCompatActivity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_article_detail);
 
+        mPrefetcher = new ArticlePrefetcher(this);
+        mTransitionWatchdog = new TransitionWatchdog(this, "detail", true);
         getLoaderManager().initLoader(0, null, this);
 
         mPagerAdapter = new MyPagerAdapter(getFragmentManager());
@@ -86,6 +104,7 @@ public class ArticleDetailActivity extends AppCompatActivity
                 ArticleListActivity.currentPosition = position;
 
                 if (mCursor != null) {
+                    mPrefetcher.prefetch(mCursor, position);
                     mCursor.moveToPosition(position);
                 }
                 updateUpButtonPosition();
@@ -118,12 +137,14 @@ public class ArticleDetailActivity extends AppCompatActivity
         if (savedInstanceState == null) {
             if (getIntent() != null && getIntent().getData() != null) {
                 mStartId = ItemsContract.Items.getItemId(getIntent().getData());
+                mStartPosition = getIntent().getIntExtra(EXTRA_POSITION, -1);
             }
 
             // 8
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                postponeEnterTransition();
-            }
+            final long tapTime = getIntent() != null
+                    ? getIntent().getLongExtra(EXTRA_TAP_TIME, SystemClock.uptimeMillis())
+                    : SystemClock.uptimeMillis();
+            mTransitionWatchdog.postpone(tapTime);
         }
         // 9
         prepareSharedElementEnterTransition();
@@ -170,18 +191,45 @@ public class ArticleDetailActivity extends AppCompatActivity
 
         // Select the start ID
         if (mStartId > 0) {
-            mCursor.moveToFirst();
-            // TODO: optimize
-            while (!mCursor.isAfterLast()) {
-                if (mCursor.getLong(ArticleLoader.Query._ID) == mStartId) {
-                    final int position = mCursor.getPosition();
-                    mPager.setCurrentItem(position, false);
-                    break;
-                }
-                mCursor.moveToNext();
+            final int position = findStartPosition();
+            if (position >= 0) {
+                mPager.setCurrentItem(position, false);
             }
             mStartId = 0;
+            mStartPosition = -1;
+        }
+        if (mCursor != null) {
+            mPrefetcher.prefetch(mCursor, mPager.getCurrentItem());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mPrefetcher.cancel();
+        mTransitionWatchdog.cancel();
+    }
+
+    TransitionWatchdog getTransitionWatchdog() {
+        return mTransitionWatchdog;
+    }
+
+    /**
+     * Returns the position of {@link #mStartId} in the cursor, or -1. The position passed by the
+     * list is checked first; the cursor is only scanned if the feed changed in between.
+     */
+    private int findStartPosition() {
+        if (mCursor.moveToPosition(mStartPosition)
+                && mCursor.getLong(ArticleLoader.Query._ID) == mStartId) {
+            return mStartPosition;
+        }
+        mCursor.moveToPosition(-1);
+        while (mCursor.moveToNext()) {
+            if (mCursor.getLong(ArticleLoader.Query._ID) == mStartId) {
+                return mCursor.getPosition();
+            }
         }
+        return -1;
     }
 
     @Override
@@ -8,7 +8,6 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.graphics.drawable.Drawable;
 import android.os.Build;
-import android.text.Html;
 import android.text.method.LinkMovementMethod;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -19,13 +18,18 @@ import android.widget.TextView;
 
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.RequestManager;
 import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.Target;
 import com.example.xyzreader.R;
 import com.example.xyzreader.data.Article;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 //adapter class
 // https://guides.codepath.com/android/Heterogenous-Layouts-inside-RecyclerView#overview
@@ -37,18 +41,28 @@ import com.example.xyzreader.data.Article;
 public class ArticleDetailAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     private Article articleElements;
+    private CharSequence byline;
 
     private final int IMAGE = 0, TITLE = 1, BODY = 2;
 
+    // Paragraphs rendered in the background ahead of the one being bound.
+    private static final int PRERENDER_AHEAD = 6;
+    // Meta bar color while the photo has no stored muted color.
+    private static final int DEFAULT_MUTED_COLOR = 0xFF333333;
+
     private final ViewHolderListener viewHolderListener;
     private final RequestManager requestManager;
+    private final HtmlSpanCache spanCache;
+    // Paragraphs before this one have already been handed to the span cache.
+    private int prerenderedParagraphs;
 
     private Activity context;
 
-    ArticleDetailAdapter(Activity activity) {
+    ArticleDetailAdapter(Activity activity, TransitionWatchdog transitionWatchdog) {
         this.context = activity;
         this.requestManager = Glide.with(context);
-        this.viewHolderListener = new ViewHolderListenerImpl(context);
+        this.spanCache = HtmlSpanCache.get(context);
+        this.viewHolderListener = new ViewHolderListenerImpl(transitionWatchdog);
     }
 
     @NonNull
@@ -104,34 +118,55 @@ public class ArticleDetailAdapter extends RecyclerView.Adapter<RecyclerView.View
      */
     private static class ViewHolderListenerImpl implements ViewHolderListener {
 
-        private Activity activity;
+        private TransitionWatchdog transitionWatchdog;
 
-        ViewHolderListenerImpl(Activity activity) {
-            this.activity = activity;
+        ViewHolderListenerImpl(TransitionWatchdog transitionWatchdog) {
+            this.transitionWatchdog = transitionWatchdog;
         }
 
         @Override
         public void onLoadCompleted() {
             // 11
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                activity.startPostponedEnterTransition();
-            }
+            // The thumbnail and then the photo both report in; only the first one starts the
+            // transition.
+            transitionWatchdog.onImageReady();
         }
 
     }
 
     private void configureTextBodyViewHolder(ArticleBodyViewHolder vhBody, int position) {
-        String[] bodyPart = articleElements.getArticleBody();
-        String singleTextElement = bodyPart[position - 2];
-        vhBody.articleBodyTextView.setText(Html.fromHtml(singleTextElement));
+        int paragraph = position - 2;
+        String singleTextElement = articleElements.getParagraph(paragraph);
+        spanCache.bind(vhBody.articleBodyTextView, singleTextElement);
+        prerenderParagraphs(paragraph + 1 + PRERENDER_AHEAD);
+    }
+
+    /**
+     * Hands the paragraphs up to {@code end} that have not been handed over yet to the span
+     * cache, so they are rendered by the time they scroll into view.
+     */
+    private void prerenderParagraphs(int end) {
+        end = Math.min(end, articleElements.getParagraphCount());
+        if (end <= prerenderedParagraphs) {
+            return;
+        }
+        List<String> html = new ArrayList<String>(end - prerenderedParagraphs);
+        for (int i = prerenderedParagraphs; i < end; i++) {
+            html.add(articleElements.getParagraph(i));
+        }
+        prerenderedParagraphs = end;
+        spanCache.prerender(html);
     }
 
     private void configureTitleViewHolder(ArticleTitleViewHolder vhTitle) {
         String title = articleElements.getTitle();
-        vhTitle.articleTitleTextView.setText(Html.fromHtml(title));
-        CharSequence byline = Html.fromHtml(articleElements.getByline());
+        spanCache.bind(vhTitle.articleTitleTextView, title);
         vhTitle.articleBylineTextView.setText(byline);
-        int mMutedColor = 0xFF333333;
+        // Extracted from the photo after the sync; nothing to compute here.
+        int mMutedColor = articleElements.getMutedColor();
+        if (mMutedColor == Article.NO_COLOR) {
+            mMutedColor = DEFAULT_MUTED_COLOR;
+        }
         vhTitle.metaBar.setBackgroundColor(mMutedColor);
     }
 
@@ -150,9 +185,34 @@ public class ArticleDetailAdapter extends RecyclerView.Adapter<RecyclerView.View
         mPhotoView.setAspectRatio(aspectRatio);
         Log.i("ArticleDetailAdapter", "setting aspect ratio: " + aspectRatio);
 
+        // The grid's thumbnail is already decoded in the memory cache under the same options, so
+        // it can be drawn at once and the transition started on it. It is never fetched from the
+        // network: if it is not cached, the transition waits for the photo as before.
+        RequestBuilder<Drawable> thumbnailRequest = requestManager
+                .load(articleElements.getThumbUrl())
+                .apply(ArticleImageOptions.thumbnail(context, aspectRatio)
+                        .onlyRetrieveFromCache(true))
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                Target<Drawable> target, boolean isFirstResource) {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, com.bumptech.glide.load.DataSource dataSource, boolean isFirstResource) {
+                        viewHolderListener.onLoadCompleted();
+                        return false;
+                    }
+                });
+
         // Load the image with Glide to prevent OOM error when the image drawables are very large.
+        // The full photo then fades in over the thumbnail.
         requestManager
                 .load(imageUrl)
+                .apply(ArticleImageOptions.photo(context, aspectRatio))
+                .thumbnail(thumbnailRequest)
+                .transition(DrawableTransitionOptions.withCrossFade())
                 .listener(new RequestListener<Drawable>() {
                     @Override
                     public boolean onLoadFailed(@Nullable GlideException e, Object model,
@@ -187,14 +247,16 @@ public class ArticleDetailAdapter extends RecyclerView.Adapter<RecyclerView.View
     @Override
     public int getItemCount() {
         if (articleElements != null) {
-            Log.i("Adapter", "item count: " + articleElements.getArticleBody().length + 2);
-            return articleElements.getArticleBody().length + 2; // text body + image + title (title+byline)
+            return articleElements.getParagraphCount() + 2; // text body + image + title (title+byline)
         }
         return 0;
     }
 
-    void setArticleData(Article articleElements) {
+    void setArticleData(Article articleElements, CharSequence byline) {
         this.articleElements = articleElements;
+        this.byline = byline;
+        prerenderedParagraphs = 0;
+        prerenderParagraphs(PRERENDER_AHEAD);
         notifyDataSetChanged();
     }
 
@@ -4,29 +4,33 @@ import android.app.Fragment;
 import android.app.LoaderManager;
 import android.content.Intent;
 import android.content.Loader;
-import android.database.Cursor;
+import android.graphics.Color;
 import android.graphics.Rect;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.core.app.ShareCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.format.DateUtils;
-import android.util.Log;
+import android.text.style.ForegroundColorSpan;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.example.xyzreader.R;
 import com.example.xyzreader.data.Article;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.ArticleCache;
+import com.example.xyzreader.data.CachedArticleLoader;
 
 /**
  * A fragment representing a single Article detail screen. This fragment is
@@ -35,13 +39,33 @@ import com.example.xyzreader.data.ArticleLoader;
  *
  */
 public class ArticleDetailFragment extends Fragment implements
-        LoaderManager.LoaderCallbacks<Cursor> {
-    private static final String TAG = "ArticleDetailFragment";
+        LoaderManager.LoaderCallbacks<Article> {
 
     public static final String ARG_ITEM_ID = "item_id";
     private static final float PARALLAX_FACTOR = 1.25f;
 
-    private Cursor mCursor;
+    private static final int LOADER_ARTICLE = 0;
+
+    private Article mArticle;
+    // The cache generation the article was taken from the cache at.
+    private long mArticleGeneration;
+    private boolean mLoaderStarted;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Starts the loader once the cached article shown is invalidated.
+    private final ArticleCache.OnInvalidatedListener mInvalidatedListener =
+            new ArticleCache.OnInvalidatedListener() {
+                @Override
+                public void onInvalidated() {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (getActivity() != null && getView() != null) {
+                                startLoader();
+                            }
+                        }
+                    });
+                }
+            };
     private long mItemId;
     private View mRootView;
     private DrawInsetsFrameLayout mDrawInsetsFrameLayout;
@@ -51,11 +75,10 @@ public class ArticleDetailFragment extends Fragment implements
     private static int mScrollY;
     private boolean mIsCard = false;
 
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
     // Use default locale format
     private SimpleDateFormat outputFormat = new SimpleDateFormat();
     // Most time functions can only handle 1902 - 2037
-    private GregorianCalendar START_OF_EPOCH = new GregorianCalendar(2, 1, 1);
+    private static final long START_OF_EPOCH = new GregorianCalendar(2, 1, 1).getTimeInMillis();
     public ArticleDetailAdapter articleDetailAdapter;
 
     /**
@@ -80,6 +103,14 @@ public class ArticleDetailFragment extends Fragment implements
         if (getArguments().containsKey(ARG_ITEM_ID)) {
             mItemId = getArguments().getLong(ARG_ITEM_ID);
         }
+        // A page seen before is bound straight from the cache, without any query. The
+        // generation is taken first, so a change racing the lookup makes the article stale.
+        final ArticleCache cache = ArticleCache.get(getActivity());
+        mArticleGeneration = cache.getGeneration();
+        mArticle = cache.get(mItemId);
+        if (mArticle != null) {
+            cache.addOnInvalidatedListener(mInvalidatedListener);
+        }
 
         mIsCard = getResources().getBoolean(R.bool.detail_is_card);
         setHasOptionsMenu(true);
@@ -97,7 +128,31 @@ public class ArticleDetailFragment extends Fragment implements
         // the fragment's onCreate may cause the same LoaderManager to be dealt to multiple
         // fragments because their mIndex is -1 (haven't been added to the activity yet). Thus,
         // we do this in onActivityCreated.
-        getLoaderManager().initLoader(0, null, this);
+        // A cached article needs no loader until the cache drops it; a loader kept across a
+        // configuration change is reconnected.
+        if (mArticle == null
+                || ArticleCache.get(getActivity()).getGeneration() != mArticleGeneration
+                || getLoaderManager().getLoader(LOADER_ARTICLE) != null) {
+            startLoader();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        ArticleCache.get(getActivity()).removeOnInvalidatedListener(mInvalidatedListener);
+    }
+
+    /**
+     * Starts loading the article through the cache; from then on the loader follows changes.
+     */
+    private void startLoader() {
+        if (mLoaderStarted) {
+            return;
+        }
+        mLoaderStarted = true;
+        ArticleCache.get(getActivity()).removeOnInvalidatedListener(mInvalidatedListener);
+        getLoaderManager().initLoader(LOADER_ARTICLE, null, this);
     }
 
     @Override
@@ -123,11 +178,25 @@ public class ArticleDetailFragment extends Fragment implements
             }
         });
 
+        final RecyclerView recyclerView = (RecyclerView) mRootView.findViewById(R.id.article_detail_rv);
+        articleDetailAdapter = new ArticleDetailAdapter(getActivityCast(),
+                getActivityCast().getTransitionWatchdog());
+        LinearLayoutManager manager = new LinearLayoutManager(getActivity());
+        recyclerView.setLayoutManager(manager);
+        recyclerView.setAdapter(articleDetailAdapter);
+        mRootView.setVisibility(View.GONE);
+
         bindViews();
 
         return mRootView;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mRootView = null;
+    }
+
     static float progress(float v, float min, float max) {
         return constrain((v - min) / (max - min), 0, 1);
     }
@@ -142,75 +211,38 @@ public class ArticleDetailFragment extends Fragment implements
         }
     }
 
-    private Date parsePublishedDate() {
-        try {
-            String date = mCursor.getString(ArticleLoader.Query.PUBLISHED_DATE);
-            return dateFormat.parse(date);
-        } catch (ParseException ex) {
-            Log.e(TAG, ex.getMessage());
-            Log.i(TAG, "passing today's date");
-            return new Date();
-        }
-    }
-
     private void bindViews() {
         if (mRootView == null) {
             return;
         }
 
-        final RecyclerView recyclerView = (RecyclerView) mRootView.findViewById(R.id.article_detail_rv);
-        articleDetailAdapter = new ArticleDetailAdapter(getActivityCast());
-        LinearLayoutManager manager = new LinearLayoutManager(getActivity());
-        recyclerView.setLayoutManager(manager);
-        recyclerView.setAdapter(articleDetailAdapter);
-
-        if (mCursor != null) {
-            mRootView.setAlpha(0);
-            mRootView.setVisibility(View.VISIBLE);
-            mRootView.animate().alpha(1);
-
-            Article articleForAdapter = new Article();
-
-            String title = mCursor.getString(ArticleLoader.Query.TITLE);
-            articleForAdapter.setTitle(title);
-
-            String imagePath = mCursor.getString(ArticleLoader.Query.PHOTO_URL);
-            articleForAdapter.setImagePath(imagePath);
+        if (mArticle != null) {
+            // Faded in once; a later load rebinds in place.
+            if (mRootView.getVisibility() != View.VISIBLE) {
+                mRootView.setAlpha(0);
+                mRootView.setVisibility(View.VISIBLE);
+                mRootView.animate().alpha(1);
+            }
 
-            Date publishedDate = parsePublishedDate();
-            String byline;
-            if (!publishedDate.before(START_OF_EPOCH.getTime())) {
-                byline = DateUtils.getRelativeTimeSpanString(
-                        publishedDate.getTime(),
+            long publishedDate = mArticle.getPublishedDate();
+            SpannableStringBuilder byline = new SpannableStringBuilder();
+            if (publishedDate >= START_OF_EPOCH) {
+                byline.append(DateUtils.getRelativeTimeSpanString(
+                        publishedDate,
                         System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
-                        DateUtils.FORMAT_ABBREV_ALL).toString()
-                        + " by <font color='#ffffff'>"
-                        + mCursor.getString(ArticleLoader.Query.AUTHOR)
-                        + "</font>";
+                        DateUtils.FORMAT_ABBREV_ALL).toString());
             } else {
                 // If date is before 1902, just show the string
-                byline = outputFormat.format(publishedDate) + " by <font color='#ffffff'>"
-                        + mCursor.getString(ArticleLoader.Query.AUTHOR)
-                        + "</font>";
+                byline.append(outputFormat.format(new Date(publishedDate)));
             }
-            articleForAdapter.setByline(byline);
-
-            String article = mCursor.getString(ArticleLoader.Query.BODY);
-            String[] articleBody;
-            if (article != null) {
-                // split text in paragraphs
-                articleBody = article.split("\\r\\n\\r\\n|\\n\\n");
-            } else {
-                articleBody = new String[0];
-            }
-
-            articleForAdapter.setArticleBody(articleBody);
-
-            float aspectRatio = Float.parseFloat(mCursor.getString(ArticleLoader.Query.ASPECT_RATIO));
-            articleForAdapter.setAspectRatio(aspectRatio);
-
-            articleDetailAdapter.setArticleData(articleForAdapter);
-            articleDetailAdapter.notifyDataSetChanged();
+            byline.append(" by ");
+            // Built per bind, the byline changes with the time and is not worth caching.
+            int authorStart = byline.length();
+            byline.append(mArticle.getAuthor());
+            byline.setSpan(new ForegroundColorSpan(Color.WHITE), authorStart, byline.length(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+            articleDetailAdapter.setArticleData(mArticle, byline);
         } else {
             mRootView.setVisibility(View.GONE);
         }
@@ -221,32 +253,22 @@ public class ArticleDetailFragment extends Fragment implements
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newInstanceForItemId(getActivity(), mItemId);
+    public Loader<Article> onCreateLoader(int i, Bundle bundle) {
+        return new CachedArticleLoader(getActivity(), mItemId);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
+    public void onLoadFinished(Loader<Article> loader, Article article) {
         if (!isAdded()) {
-            if (cursor != null) {
-                cursor.close();
-            }
             return;
         }
-
-        mCursor = cursor;
-        if (mCursor != null && !mCursor.moveToFirst()) {
-            Log.e(TAG, "Error reading item detail cursor");
-            mCursor.close();
-            mCursor = null;
-        }
-
+        mArticle = article;
         bindViews();
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> cursorLoader) {
-        mCursor = null;
+    public void onLoaderReset(Loader<Article> loader) {
+        // The article is immutable and stays usable.
     }
 
 }
@@ -0,0 +1,68 @@
+package com.example.xyzreader.ui;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.bumptech.glide.request.RequestOptions;
+import com.example.xyzreader.R;
+
+/**
+ * Glide options that decode article images straight at the pixel size their view will be laid
+ * out at. The width follows from the window and the layout's resources, the height from the
+ * article's stored aspect ratio, so neither has to wait for layout.
+ * <p>
+ * Every request for the same image at the same place must use these options, so that preloads
+ * and the views share Glide's memory cache entries.
+ */
+final class ArticleImageOptions {
+
+    private ArticleImageOptions() {
+    }
+
+    /** Options for a thumbnail in the list grid. */
+    static RequestOptions thumbnail(Context context, float aspectRatio) {
+        return sized(getThumbnailWidth(context), aspectRatio);
+    }
+
+    /** Options for the photo at the top of a detail page. */
+    static RequestOptions photo(Context context, float aspectRatio) {
+        return sized(getPhotoWidth(context), aspectRatio);
+    }
+
+    /**
+     * The grid splits the list's width, less its side padding, evenly between its columns; each
+     * card then keeps its margin on both sides.
+     */
+    static int getThumbnailWidth(Context context) {
+        final Resources res = context.getResources();
+        final int columns = res.getInteger(R.integer.list_column_count);
+        final int sideMargin = res.getDimensionPixelSize(R.dimen.list_side_margin);
+        final int cardMargin = res.getDimensionPixelSize(R.dimen.list_card_margin);
+        return (getWindowWidth(res) - 2 * sideMargin) / columns - 2 * cardMargin;
+    }
+
+    /**
+     * The detail photo spans the page's content, which spans the window. On the card layout
+     * ({@code detail_is_card}) the content keeps a margin on both sides and is capped at the
+     * card's width.
+     */
+    static int getPhotoWidth(Context context) {
+        final Resources res = context.getResources();
+        final int sideMargin = res.getDimensionPixelSize(R.dimen.detail_card_side_margin);
+        final int maxWidth = res.getDimensionPixelSize(R.dimen.detail_content_max_width);
+        return Math.min(getWindowWidth(res) - 2 * sideMargin, maxWidth);
+    }
+
+    private static int getWindowWidth(Resources res) {
+        return Math.round(res.getConfiguration().screenWidthDp * res.getDisplayMetrics().density);
+    }
+
+    private static RequestOptions sized(int width, float aspectRatio) {
+        width = Math.max(1, width);
+        final int height = Math.max(1,
+                DynamicHeightNetworkImageView.heightForWidth(width, aspectRatio));
+        return new RequestOptions()
+                .override(width, height)
+                .centerCrop();
+    }
+}
@@ -1,14 +1,13 @@
 package com.example.xyzreader.ui;
 
-import android.app.LoaderManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.Loader;
 import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.SharedElementCallback;
@@ -19,7 +18,7 @@ import androidx.recyclerview.widget.StaggeredGridLayoutManager;
 import android.view.View;
 
 import com.example.xyzreader.R;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.SyncScheduler;
 import com.example.xyzreader.data.UpdaterService;
 
 import java.util.List;
@@ -46,24 +45,52 @@ import java.util.Map;
  * -> {@link ArticleDetailActivity}
  */
 public class ArticleListActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        ArticlePageList.Callback {
 
     private SwipeRefreshLayout mSwipeRefreshLayout;
     private RecyclerView mRecyclerView;
+    private StaggeredGridLayoutManager mLayoutManager;
+    private ArticleListAdapter mAdapter;
+    private ArticlePageList mPageList;
+    private ThumbnailPreloader mThumbnailPreloader;
+    private TransitionWatchdog mTransitionWatchdog;
 
     // 2
     public static int currentPosition;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long createTime = SystemClock.uptimeMillis();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_article_list);
 
         mSwipeRefreshLayout = (SwipeRefreshLayout) findViewById(R.id.swipe_refresh_layout);
 
         mRecyclerView = (RecyclerView) findViewById(R.id.recycler_view);
-        getLoaderManager().initLoader(0, null, this);
+        mTransitionWatchdog = new TransitionWatchdog(this, "list", false);
+        mAdapter = new ArticleListAdapter(this, null, mTransitionWatchdog);
+        mAdapter.setHasStableIds(true);
+        mRecyclerView.setAdapter(mAdapter);
+        int columnCount = getResources().getInteger(R.integer.list_column_count);
+        mLayoutManager =
+                new StaggeredGridLayoutManager(columnCount, StaggeredGridLayoutManager.VERTICAL);
+        mRecyclerView.setLayoutManager(mLayoutManager);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                mPageList.ensureLoaded(findLastVisiblePosition());
+            }
+        });
+        mThumbnailPreloader = new ThumbnailPreloader(this, mAdapter, columnCount);
+        mAdapter.setThumbnailPreloader(mThumbnailPreloader);
+        mRecyclerView.addOnScrollListener(mThumbnailPreloader);
+
+        mPageList = new ArticlePageList(this, getLoaderManager(), this);
+        mPageList.start();
+        // The item to scroll back to may lie beyond the first page.
+        mPageList.ensureLoaded(currentPosition);
 
+        SyncScheduler.schedule(this);
         if (savedInstanceState == null) {
             refresh();
         }
@@ -71,7 +98,8 @@ public class ArticleListActivity extends AppCompatActivity implements
         // 1
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             prepareExitTransitions(); // prepares exit transition
-            postponeEnterTransition(); // This enter transition refers to the navigation from details fragment back here to the main screen
+            // This enter transition refers to the navigation from details fragment back here to the main screen
+            mTransitionWatchdog.postpone(createTime);
         }
 
         // 3
@@ -103,8 +131,19 @@ public class ArticleListActivity extends AppCompatActivity implements
                 });
     }
 
+    @Override
+    public void onActivityReenter(int resultCode, Intent data) {
+        super.onActivityReenter(resultCode, data);
+        // The pager may have been swiped past the pages loaded here.
+        mPageList.ensureLoaded(currentPosition);
+    }
+
+    /**
+     * Syncs in the foreground only if the stored articles are stale; otherwise the list shows
+     * what is stored and the scheduled sync keeps it fresh.
+     */
     private void refresh() {
-        startService(new Intent(this, UpdaterService.class));
+        SyncScheduler.syncIfStale(this);
     }
 
     @Override
@@ -159,6 +198,12 @@ public class ArticleListActivity extends AppCompatActivity implements
         unregisterReceiver(mRefreshingReceiver);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mTransitionWatchdog.cancel();
+    }
+
     private boolean mIsRefreshing = false;
 
     private BroadcastReceiver mRefreshingReceiver = new BroadcastReceiver() {
@@ -175,25 +220,17 @@ public class ArticleListActivity extends AppCompatActivity implements
         mSwipeRefreshLayout.setRefreshing(mIsRefreshing);
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newAllArticlesInstance(this);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-        ArticleListAdapter adapter = new ArticleListAdapter(this, cursor);
-        adapter.setHasStableIds(true);
-        mRecyclerView.setAdapter(adapter);
-        int columnCount = getResources().getInteger(R.integer.list_column_count);
-        StaggeredGridLayoutManager sglm =
-                new StaggeredGridLayoutManager(columnCount, StaggeredGridLayoutManager.VERTICAL);
-        mRecyclerView.setLayoutManager(sglm);
+    private int findLastVisiblePosition() {
+        int last = RecyclerView.NO_POSITION;
+        for (int position : mLayoutManager.findLastVisibleItemPositions(null)) {
+            last = Math.max(last, position);
+        }
+        return last;
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mRecyclerView.setAdapter(null);
+    public void onPagesChanged(Cursor cursor) {
+        mAdapter.swapCursor(cursor);
     }
 
 }
@@ -6,7 +6,7 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
-import android.text.Html;
+import android.os.SystemClock;
 import android.text.format.DateUtils;
 import android.util.Log;
 import android.util.Pair;
@@ -29,11 +29,9 @@ import com.example.xyzreader.R;
 import com.example.xyzreader.data.ArticleLoader;
 import com.example.xyzreader.data.ItemsContract;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 
 import static com.example.xyzreader.ui.ArticleListActivity.currentPosition;
@@ -52,20 +50,21 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
     private Activity mActivity;
 
     private static final String TAG = "ArticleListAdapter";
-    private static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
-    // Use default locale format
-    private static SimpleDateFormat outputFormat = new SimpleDateFormat();
     // Most time functions can only handle 1902 - 2037
-    private static GregorianCalendar START_OF_EPOCH = new GregorianCalendar(2, 1, 1);
+    private static final long START_OF_EPOCH = new GregorianCalendar(2, 1, 1).getTimeInMillis();
 
     private final ViewHolderListener viewHolderListener;
     private final RequestManager requestManager;
+    // Where bound thumbnails came from, to see how often the first scroll waits on the network.
+    private final ImageCacheStats thumbnailStats = new ImageCacheStats("list thumbnails");
+    private ThumbnailPreloader mThumbnailPreloader;
 
-    public ArticleListAdapter(Activity activity, Cursor cursor) {
+    public ArticleListAdapter(Activity activity, Cursor cursor,
+                              TransitionWatchdog transitionWatchdog) {
         mCursor = cursor;
         mActivity = activity;
         this.requestManager = Glide.with(mActivity);
-        this.viewHolderListener = new ViewHolderListenerImpl(mActivity);
+        this.viewHolderListener = new ViewHolderListenerImpl(mActivity, transitionWatchdog);
     }
 
     /**
@@ -87,18 +86,44 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.list_item_article, parent, false);
-        return new ViewHolder(view, requestManager, viewHolderListener);
+        return new ViewHolder(view, requestManager, viewHolderListener, thumbnailStats);
     }
 
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
         mCursor.moveToPosition(position);
         holder.onBind(mCursor, mActivity);
+        if (mThumbnailPreloader != null) {
+            mThumbnailPreloader.onThumbnailBound(mCursor.getString(ArticleLoader.Query.THUMB_URL));
+        }
+    }
+
+    void setThumbnailPreloader(ThumbnailPreloader thumbnailPreloader) {
+        mThumbnailPreloader = thumbnailPreloader;
+    }
+
+    String getThumbnailUrl(int position) {
+        mCursor.moveToPosition(position);
+        return mCursor.getString(ArticleLoader.Query.THUMB_URL);
+    }
+
+    float getAspectRatio(int position) {
+        mCursor.moveToPosition(position);
+        return mCursor.getFloat(ArticleLoader.Query.ASPECT_RATIO);
     }
 
     @Override
     public int getItemCount() {
-        return mCursor.getCount();
+        return (mCursor != null) ? mCursor.getCount() : 0;
+    }
+
+    /**
+     * Switches to a new cursor over the list. The old cursor is not closed; it belongs to the
+     * loaders that produced it.
+     */
+    void swapCursor(Cursor cursor) {
+        mCursor = cursor;
+        notifyDataSetChanged();
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder implements
@@ -109,14 +134,19 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
         public TextView subtitleView;
         private final RequestManager requestManager;
         private final ViewHolderListener viewHolderListener;
+        private final ImageCacheStats thumbnailStats;
+        // Use default locale format
+        private final SimpleDateFormat outputFormat = new SimpleDateFormat();
 
-        public ViewHolder(View view, RequestManager requestManager, ViewHolderListener viewHolderListener) {
+        public ViewHolder(View view, RequestManager requestManager, ViewHolderListener viewHolderListener,
+                          ImageCacheStats thumbnailStats) {
             super(view);
             thumbnailView = (DynamicHeightNetworkImageView) view.findViewById(R.id.thumbnail);
             titleView = (TextView) view.findViewById(R.id.article_title);
             subtitleView = (TextView) view.findViewById(R.id.article_subtitle);
             this.viewHolderListener = viewHolderListener;
             this.requestManager = requestManager;
+            this.thumbnailStats = thumbnailStats;
             view.setOnClickListener(this);
         }
 
@@ -129,28 +159,29 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
         void onBind(Cursor cursor, Activity activity) {
             String title = cursor.getString(ArticleLoader.Query.TITLE);
             titleView.setText(title);
-            Date publishedDate = parsePublishedDate(cursor);
-            CharSequence subtitle;
-            if (!publishedDate.before(START_OF_EPOCH.getTime())) {
-                subtitle = Html.fromHtml(
-                        DateUtils.getRelativeTimeSpanString(
-                                publishedDate.getTime(),
-                                System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
-                                DateUtils.FORMAT_ABBREV_ALL).toString()
-                                + "<br/>" + " by "
-                                + cursor.getString(ArticleLoader.Query.AUTHOR));
+            long publishedDate = cursor.getLong(ArticleLoader.Query.PUBLISHED_DATE);
+            // Plain text: the subtitle has no markup beyond a line break, so there is no HTML
+            // to parse on bind.
+            String subtitle;
+            if (publishedDate >= START_OF_EPOCH) {
+                subtitle = DateUtils.getRelativeTimeSpanString(
+                        publishedDate,
+                        System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
+                        DateUtils.FORMAT_ABBREV_ALL).toString()
+                        + "\nby "
+                        + cursor.getString(ArticleLoader.Query.AUTHOR);
             } else {
-                subtitle = Html.fromHtml(
-                        outputFormat.format(publishedDate)
-                                + "<br/>" + " by "
-                                + cursor.getString(ArticleLoader.Query.AUTHOR));
+                subtitle = outputFormat.format(new Date(publishedDate))
+                        + "\nby "
+                        + cursor.getString(ArticleLoader.Query.AUTHOR);
             }
             subtitleView.setText(subtitle);
             String imageUrl = cursor.getString(ArticleLoader.Query.THUMB_URL);
-            thumbnailView.setAspectRatio(cursor.getFloat(ArticleLoader.Query.ASPECT_RATIO));
+            float aspectRatio = cursor.getFloat(ArticleLoader.Query.ASPECT_RATIO);
+            thumbnailView.setAspectRatio(aspectRatio);
 
             int adapterPosition = getAdapterPosition();
-            setImage(adapterPosition, imageUrl);
+            setImage(adapterPosition, imageUrl, aspectRatio);
             // 4
             // Set the string value of the image resource as the unique transition name for the view.
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -159,22 +190,13 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
             }
         }
 
-        private Date parsePublishedDate(Cursor cursor) {
-            try {
-                String date = cursor.getString(ArticleLoader.Query.PUBLISHED_DATE);
-                return dateFormat.parse(date);
-            } catch (ParseException ex) {
-                Log.e(TAG, ex.getMessage());
-                Log.i(TAG, "passing today's date");
-                return new Date();
-            }
-        }
-
-        void setImage(final int adapterPosition, final String imageUrl) {
+        void setImage(final int adapterPosition, final String imageUrl, float aspectRatio) {
             // Load the image with Glide to prevent OOM error when the image drawables are very large.
             Log.i("ArticleListAdapter", "loading image: " + imageUrl);
+            // Decoded at the thumbnail's size straight away, without waiting for layout.
             requestManager
                     .load(imageUrl)
+                    .apply(ArticleImageOptions.thumbnail(itemView.getContext(), aspectRatio))
                     .listener(new RequestListener<Drawable>() {
                         @Override
                         public boolean onLoadFailed(@Nullable GlideException e, Object model,
@@ -185,6 +207,7 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
 
                         @Override
                         public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, com.bumptech.glide.load.DataSource dataSource, boolean isFirstResource) {
+                            thumbnailStats.record(dataSource);
                             viewHolderListener.onLoadCompleted(adapterPosition);
                             return false;
                         }
@@ -206,11 +229,11 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
     private static class ViewHolderListenerImpl implements ViewHolderListener {
 
         private Activity activity;
-        private AtomicBoolean enterTransitionStarted;
+        private TransitionWatchdog transitionWatchdog;
 
-        ViewHolderListenerImpl(Activity activity) {
+        ViewHolderListenerImpl(Activity activity, TransitionWatchdog transitionWatchdog) {
             this.activity = activity;
-            this.enterTransitionStarted = new AtomicBoolean();
+            this.transitionWatchdog = transitionWatchdog;
         }
 
         @Override
@@ -219,14 +242,10 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
             if (currentPosition != position) {
                 return;
             }
-            if (enterTransitionStarted.getAndSet(true)) {
-                return;
-            }
 
             // 6
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                activity.startPostponedEnterTransition();
-            }
+            // Only starts a transition that is still postponed.
+            transitionWatchdog.onImageReady();
         }
 
         /**
@@ -243,7 +262,9 @@ public class ArticleListAdapter extends RecyclerView.Adapter<ArticleListAdapter.
             currentPosition = adapterPosition;
 
             Intent intent = new Intent(Intent.ACTION_VIEW,
-                    ItemsContract.Items.buildItemUri(id));
+                    ItemsContract.Items.buildItemUri(id))
+                    .putExtra(ArticleDetailActivity.EXTRA_POSITION, adapterPosition)
+                    .putExtra(ArticleDetailActivity.EXTRA_TAP_TIME, SystemClock.uptimeMillis());
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
                 // 5
                 // create the transition animation
@@ -0,0 +1,182 @@
+package com.example.xyzreader.ui;
+
+import android.app.LoaderManager;
+import android.content.Context;
+import android.content.Loader;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.os.Bundle;
+
+import com.example.xyzreader.data.ArticleLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the article list page by page, so memory and time to first item do not grow with the
+ * size of the feed.
+ * <p>
+ * Pages tile the list on the (published date, id) keyset: each page starts right after the last
+ * row of the page before it. Only the last page is capped by a row count; once a page has a
+ * successor it is pinned to the key range it covered, so a page reloading after a sync can grow
+ * or shrink but never overlap its neighbours or leave a gap between them. Each page is its own
+ * loader and reloads on change notifications by itself.
+ */
+class ArticlePageList implements LoaderManager.LoaderCallbacks<Cursor> {
+
+    /** Rows per page; a multiple of every column count used by the grid. */
+    static final int PAGE_SIZE = 60;
+    /** Start loading the next page once the demanded position is this close to the end. */
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+    private static final String ARG_AFTER_DATE = "after_date";
+    private static final String ARG_AFTER_ID = "after_id";
+    private static final String ARG_UNTIL_DATE = "until_date";
+    private static final String ARG_UNTIL_ID = "until_id";
+
+    interface Callback {
+        /**
+         * Called with a cursor over all loaded pages whenever one of them changes. The cursor
+         * must not be closed; the pages belong to their loaders.
+         */
+        void onPagesChanged(Cursor cursor);
+    }
+
+    private final Context mContext;
+    private final LoaderManager mLoaderManager;
+    private final Callback mCallback;
+
+    private final List<Page> mPages = new ArrayList<Page>();
+    private int mDemandedPosition;
+
+    private static class Page {
+        final ArticleLoader.Key after;
+        Cursor cursor;
+
+        Page(ArticleLoader.Key after) {
+            this.after = after;
+        }
+    }
+
+    ArticlePageList(Context context, LoaderManager loaderManager, Callback callback) {
+        mContext = context;
+        mLoaderManager = loaderManager;
+        mCallback = callback;
+    }
+
+    /**
+     * Loads the first page. Pages left behind by a previous instance, such as before a
+     * configuration change, are dropped; {@link #ensureLoaded(int)} pages back in from the top.
+     */
+    void start() {
+        for (int id = 1; mLoaderManager.getLoader(id) != null; id++) {
+            mLoaderManager.destroyLoader(id);
+        }
+        mPages.clear();
+        mPages.add(new Page(null));
+        mLoaderManager.restartLoader(0, buildArgs(0), this);
+    }
+
+    /**
+     * Makes sure pages are loaded up to a little past {@code position}, typically the last
+     * visible item of the grid or the item to scroll back to.
+     */
+    void ensureLoaded(int position) {
+        if (position > mDemandedPosition) {
+            mDemandedPosition = position;
+        }
+        loadNextPageIfNeeded();
+    }
+
+    private void loadNextPageIfNeeded() {
+        final Page last = mPages.get(mPages.size() - 1);
+        if (last.cursor == null || last.cursor.getCount() < PAGE_SIZE) {
+            // Still loading, or the last page is short and so the end of the list.
+            return;
+        }
+        if (getLoadedCount() > mDemandedPosition + PREFETCH_DISTANCE) {
+            return;
+        }
+
+        last.cursor.moveToLast();
+        final ArticleLoader.Key lastKey = ArticleLoader.Key.of(last.cursor);
+
+        // Pin the current last page to the range it covers now that it gets a successor.
+        final int lastIndex = mPages.size() - 1;
+        mPages.add(new Page(lastKey));
+        mLoaderManager.restartLoader(lastIndex, buildArgs(lastIndex), this);
+        mLoaderManager.initLoader(lastIndex + 1, buildArgs(lastIndex + 1), this);
+    }
+
+    private int getLoadedCount() {
+        int count = 0;
+        for (Page page : mPages) {
+            if (page.cursor != null) {
+                count += page.cursor.getCount();
+            }
+        }
+        return count;
+    }
+
+    private Bundle buildArgs(int index) {
+        final Bundle args = new Bundle();
+        final ArticleLoader.Key after = mPages.get(index).after;
+        if (after != null) {
+            args.putLong(ARG_AFTER_DATE, after.publishedDate);
+            args.putLong(ARG_AFTER_ID, after.id);
+        }
+        if (index + 1 < mPages.size()) {
+            // The page runs up to and including the row its successor starts after.
+            final ArticleLoader.Key until = mPages.get(index + 1).after;
+            args.putLong(ARG_UNTIL_DATE, until.publishedDate);
+            args.putLong(ARG_UNTIL_ID, until.id);
+        }
+        return args;
+    }
+
+    private static ArticleLoader.Key readKey(Bundle args, String dateKey, String idKey) {
+        if (!args.containsKey(dateKey)) {
+            return null;
+        }
+        return new ArticleLoader.Key(args.getLong(dateKey), args.getLong(idKey));
+    }
+
+    private void publish() {
+        final List<Cursor> cursors = new ArrayList<Cursor>(mPages.size());
+        for (Page page : mPages) {
+            if (page.cursor != null) {
+                cursors.add(page.cursor);
+            }
+        }
+        mCallback.onPagesChanged(new MergeCursor(cursors.toArray(new Cursor[cursors.size()])));
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        return ArticleLoader.newPageInstance(mContext,
+                readKey(args, ARG_AFTER_DATE, ARG_AFTER_ID),
+                readKey(args, ARG_UNTIL_DATE, ARG_UNTIL_ID),
+                PAGE_SIZE);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        final int index = loader.getId();
+        if (index >= mPages.size()) {
+            return;
+        }
+        mPages.get(index).cursor = cursor;
+        publish();
+        loadNextPageIfNeeded();
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        final int index = loader.getId();
+        if (index >= mPages.size()) {
+            return;
+        }
+        mPages.get(index).cursor = null;
+        publish();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.xyzreader.ui;
+
+import android.app.Activity;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.target.Target;
+import com.example.xyzreader.R;
+import com.example.xyzreader.data.Article;
+import com.example.xyzreader.data.ArticleCache;
+import com.example.xyzreader.data.ArticleLoader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Warms the pages around the one shown in the article pager, so a swipe lands on a page that can
+ * bind at once: the article is loaded into the {@link ArticleCache}, its title and first
+ * paragraphs are rendered into the {@link HtmlSpanCache}, and its photo is decoded with the
+ * page's {@link ArticleImageOptions} into Glide's memory cache.
+ * <p>
+ * Work for pages that leave the window is cancelled. The window reaches
+ * {@code R.integer.pager_prefetch_distance} pages either side; zero turns prefetching off.
+ */
+class ArticlePrefetcher {
+
+    /** Paragraphs rendered ahead for each article, about a screenful. */
+    private static final int PRERENDER_PARAGRAPHS = 6;
+
+    private final Context mContext;
+    private final ContentResolver mContentResolver;
+    private final RequestManager mRequestManager;
+    private final ArticleCache mArticleCache;
+    private final HtmlSpanCache mSpanCache;
+    private final int mDistance;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Map<Long, Future<?>> mArticleTasks = new HashMap<Long, Future<?>>();
+    private final Map<String, Target<Drawable>> mPhotoTargets =
+            new HashMap<String, Target<Drawable>>();
+
+    ArticlePrefetcher(Activity activity) {
+        mContext = activity;
+        mContentResolver = activity.getContentResolver();
+        mRequestManager = Glide.with(activity);
+        mArticleCache = ArticleCache.get(activity);
+        mSpanCache = HtmlSpanCache.get(activity);
+        mDistance = activity.getResources().getInteger(R.integer.pager_prefetch_distance);
+    }
+
+    /**
+     * Warms the pages around {@code position} and cancels the work for pages that are no longer
+     * near it. {@code cursor} is the pager's cursor, loaded with
+     * {@link ArticleLoader.Query#PROJECTION}.
+     */
+    void prefetch(Cursor cursor, int position) {
+        final Set<Long> ids = new HashSet<Long>();
+        final Set<String> photoUrls = new HashSet<String>();
+        for (int p = position - mDistance; p <= position + mDistance; p++) {
+            if (mDistance == 0 || !cursor.moveToPosition(p)) {
+                continue;
+            }
+
+            final long id = cursor.getLong(ArticleLoader.Query._ID);
+            ids.add(id);
+            if (!mArticleTasks.containsKey(id)) {
+                mArticleTasks.put(id, mExecutor.submit(new ArticleTask(id)));
+            }
+
+            final String photoUrl = cursor.getString(ArticleLoader.Query.PHOTO_URL);
+            photoUrls.add(photoUrl);
+            if (!mPhotoTargets.containsKey(photoUrl)) {
+                // The same options as the page's own request, so it is served from the memory
+                // cache.
+                final float aspectRatio = cursor.getFloat(ArticleLoader.Query.ASPECT_RATIO);
+                mPhotoTargets.put(photoUrl, mRequestManager
+                        .load(photoUrl)
+                        .apply(ArticleImageOptions.photo(mContext, aspectRatio))
+                        .preload());
+            }
+        }
+
+        for (Iterator<Map.Entry<Long, Future<?>>> it = mArticleTasks.entrySet().iterator();
+             it.hasNext(); ) {
+            final Map.Entry<Long, Future<?>> task = it.next();
+            if (!ids.contains(task.getKey())) {
+                task.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<String, Target<Drawable>>> it = mPhotoTargets.entrySet().iterator();
+             it.hasNext(); ) {
+            final Map.Entry<String, Target<Drawable>> target = it.next();
+            if (!photoUrls.contains(target.getKey())) {
+                mRequestManager.clear(target.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Cancels all outstanding work. The prefetcher cannot be used afterwards.
+     */
+    void cancel() {
+        for (Future<?> task : mArticleTasks.values()) {
+            task.cancel(false);
+        }
+        mArticleTasks.clear();
+        for (Target<Drawable> target : mPhotoTargets.values()) {
+            mRequestManager.clear(target);
+        }
+        mPhotoTargets.clear();
+        mExecutor.shutdown();
+    }
+
+    private class ArticleTask implements Runnable {
+        private final long mId;
+
+        ArticleTask(long id) {
+            mId = id;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            final Article article = mArticleCache.load(mContentResolver, mId);
+            if (article == null) {
+                return;
+            }
+
+            final int count = Math.min(PRERENDER_PARAGRAPHS, article.getParagraphCount());
+            final List<String> html = new ArrayList<String>(count + 1);
+            html.add(article.getTitle());
+            for (int i = 0; i < count; i++) {
+                html.add(article.getParagraph(i));
+            }
+            mSpanCache.prerender(html);
+        }
+    }
+}
@@ -21,15 +21,30 @@ public class DynamicHeightNetworkImageView extends AppCompatImageView {
         super(context, attrs, defStyle);
     }
 
+    /**
+     * Sets the width to height ratio. Only a change in ratio asks for a new layout, so rebinding a
+     * view to an image of the same shape costs no layout pass.
+     */
     public void setAspectRatio(float aspectRatio) {
+        if (aspectRatio == mAspectRatio) {
+            return;
+        }
         mAspectRatio = aspectRatio;
         requestLayout();
     }
 
+    /**
+     * The height this view takes for a given width; {@link ArticleImageOptions} sizes decodes
+     * with it before layout.
+     */
+    static int heightForWidth(int width, float aspectRatio) {
+        return (int) (width / aspectRatio);
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         int measuredWidth = getMeasuredWidth();
-        setMeasuredDimension(measuredWidth, (int) (measuredWidth / mAspectRatio));
+        setMeasuredDimension(measuredWidth, heightForWidth(measuredWidth, mAspectRatio));
     }
 }
@@ -0,0 +1,369 @@
+package com.example.xyzreader.ui;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.Html;
+import android.text.SpannedString;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns article HTML into spanned text once and keeps the result, so binding a view is a lookup
+ * rather than an HTML parse.
+ * <p>
+ * Rendered text is held in memory with LRU eviction and written to a disk cache in the
+ * {@link SpanCodec} format, so it outlives the process. HTML is only ever parsed, and the disk
+ * only ever touched, on a background thread. {@link #prerender(List)} warms the memory cache
+ * ahead of the binds that will need it; a bind that misses anyway shows the plain text and swaps
+ * in the spans once they are ready.
+ */
+final class HtmlSpanCache {
+    private static final String TAG = "HtmlSpanCache";
+
+    /** Memory budget in chars of rendered text. */
+    private static final int MEMORY_CACHE_CHARS = 256 * 1024;
+    private static final long DISK_CACHE_SIZE = 4 * 1024 * 1024;
+    private static final String DISK_CACHE_DIR_PREFIX = "spans-";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Pattern LINE_BREAK = Pattern.compile("<(br|/p)\\b[^>]*>",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern TAG_PATTERN = Pattern.compile("<[^>]*>");
+    private static final Pattern ENTITY =
+            Pattern.compile("&(#[0-9]+|#[xX][0-9a-fA-F]+|[a-zA-Z]+);");
+
+    private static HtmlSpanCache sInstance;
+
+    private final LruCache<String, CharSequence> mMemoryCache =
+            new LruCache<String, CharSequence>(MEMORY_CACHE_CHARS) {
+                @Override
+                protected int sizeOf(String html, CharSequence spans) {
+                    return html.length() + spans.length();
+                }
+            };
+    private final File mCacheDir;
+    private final File mDiskCacheDir;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // The HTML each view was last bound to, so a late render does not land on a recycled view.
+    // Only touched on the main thread.
+    private final Map<TextView, String> mBoundHtml = new WeakHashMap<TextView, String>();
+
+    // Only touched on the executor thread; negative until the disk cache has been opened.
+    private long mDiskCacheBytes = -1;
+
+    private HtmlSpanCache(Context context) {
+        mCacheDir = context.getApplicationContext().getCacheDir();
+        mDiskCacheDir = new File(mCacheDir, DISK_CACHE_DIR_PREFIX + SpanCodec.VERSION);
+    }
+
+    static synchronized HtmlSpanCache get(Context context) {
+        if (sInstance == null) {
+            sInstance = new HtmlSpanCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows {@code html} rendered to spanned text in {@code view}. On a memory miss the view gets
+     * the plain text at once, and the spans once they have been read from disk or rendered.
+     * Must be called on the main thread.
+     */
+    void bind(final TextView view, final String html) {
+        if (html == null) {
+            mBoundHtml.remove(view);
+            view.setText("");
+            return;
+        }
+        final CharSequence spans = mMemoryCache.get(html);
+        if (spans != null) {
+            mBoundHtml.remove(view);
+            view.setText(spans);
+            return;
+        }
+
+        mBoundHtml.put(view, html);
+        view.setText(toPlainText(html));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final CharSequence rendered = loadIntoMemory(html);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (html.equals(mBoundHtml.get(view))) {
+                            mBoundHtml.remove(view);
+                            view.setText(rendered);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Renders the given HTML strings into the memory cache on a background thread, reading them
+     * back from disk when they were rendered before.
+     */
+    void prerender(final List<String> htmls) {
+        if (htmls.isEmpty()) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                for (String html : htmls) {
+                    if (html != null) {
+                        loadIntoMemory(html);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs on the executor thread.
+     */
+    private CharSequence loadIntoMemory(String html) {
+        CharSequence spans = mMemoryCache.get(html);
+        if (spans == null) {
+            spans = readFromDisk(html);
+            if (spans == null) {
+                spans = render(html);
+                writeToDisk(html, spans);
+            }
+            mMemoryCache.put(html, spans);
+        }
+        return spans;
+    }
+
+    /**
+     * The result is immutable, so it can be shared between views and threads, and
+     * {@link android.widget.TextView#setText(CharSequence)} does not need to copy it.
+     */
+    private static CharSequence render(String html) {
+        return new SpannedString(Html.fromHtml(html));
+    }
+
+    /**
+     * A cheap stand-in for the rendered text: tags dropped, line breaks kept and entities
+     * decoded, so the text reads and wraps about the same.
+     */
+    static String toPlainText(String html) {
+        final String text = TAG_PATTERN.matcher(LINE_BREAK.matcher(html).replaceAll("\n"))
+                .replaceAll("");
+        final Matcher matcher = ENTITY.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+        final StringBuffer decoded = new StringBuffer(text.length());
+        do {
+            final String replacement = decodeEntity(matcher.group(1));
+            matcher.appendReplacement(decoded, Matcher.quoteReplacement(
+                    replacement != null ? replacement : matcher.group()));
+        } while (matcher.find());
+        matcher.appendTail(decoded);
+        return decoded.toString();
+    }
+
+    /**
+     * Returns the text of a numeric or common named entity, or {@code null} for any other.
+     */
+    private static String decodeEntity(String entity) {
+        if (entity.charAt(0) == '#') {
+            try {
+                final boolean hex = entity.length() > 1
+                        && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X');
+                final int codePoint =
+                        Integer.parseInt(entity.substring(hex ? 2 : 1), hex ? 16 : 10);
+                return Character.isValidCodePoint(codePoint)
+                        ? new String(Character.toChars(codePoint)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        switch (entity) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return "\u00a0";
+            default:
+                return null;
+        }
+    }
+
+    private CharSequence readFromDisk(String html) {
+        if (!openDiskCache()) {
+            return null;
+        }
+        final File file = new File(mDiskCacheDir, key(html));
+        if (!file.exists()) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+            final CharSequence spans = SpanCodec.decode(bytes);
+            // Keep recently read entries at the young end of the disk cache.
+            file.setLastModified(System.currentTimeMillis());
+            return spans;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Dropping unreadable span cache entry " + file.getName(), e);
+            deleteFromDisk(file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String html, CharSequence spans) {
+        if (!openDiskCache()) {
+            return;
+        }
+        final File file = new File(mDiskCacheDir, key(html));
+        if (file.exists()) {
+            return;
+        }
+        // Text with spans the format cannot hold, such as images, is only cached in memory.
+        final byte[] bytes = SpanCodec.encode(spans);
+        if (bytes == null) {
+            return;
+        }
+
+        // Write to the side and rename, so readers never see a partial entry.
+        final File tmp = new File(mDiskCacheDir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write span cache entry " + file.getName(), e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+
+        mDiskCacheBytes += bytes.length;
+        if (mDiskCacheBytes > DISK_CACHE_SIZE) {
+            trimDiskCache();
+        }
+    }
+
+    /**
+     * Creates the disk cache directory on first use and removes those left behind by other
+     * format versions. Returns false if the cache cannot be used.
+     */
+    private boolean openDiskCache() {
+        if (mDiskCacheBytes >= 0) {
+            return true;
+        }
+        if (!mDiskCacheDir.isDirectory() && !mDiskCacheDir.mkdirs()) {
+            Log.w(TAG, "Could not create " + mDiskCacheDir);
+            return false;
+        }
+
+        final File[] dirs = mCacheDir.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                if (dir.getName().startsWith(DISK_CACHE_DIR_PREFIX) && !dir.equals(mDiskCacheDir)) {
+                    deleteDirectory(dir);
+                }
+            }
+        }
+
+        long bytes = 0;
+        final File[] files = mDiskCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        mDiskCacheBytes = bytes;
+        return true;
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is down to three quarters of its
+     * budget, so trimming does not run on every write once the cache is full.
+     */
+    private void trimDiskCache() {
+        final File[] files = mDiskCacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && mDiskCacheBytes > DISK_CACHE_SIZE * 3 / 4; i++) {
+            deleteFromDisk(files[i]);
+        }
+    }
+
+    private void deleteFromDisk(File file) {
+        final long length = file.length();
+        if (file.delete()) {
+            mDiskCacheBytes -= length;
+        }
+    }
+
+    private static void deleteDirectory(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static String key(String html) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime ships SHA-1.
+            throw new IllegalStateException(e);
+        }
+        final byte[] hash = digest.digest(html.getBytes(UTF_8));
+        final StringBuilder key = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+}
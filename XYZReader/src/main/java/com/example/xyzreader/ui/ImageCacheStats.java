@@ -0,0 +1,47 @@
+package com.example.xyzreader.ui;
+
+import android.util.Log;
+
+import com.bumptech.glide.load.DataSource;
+
+/**
+ * Counts where the images shown by a screen came from, to tell how many had to wait on the
+ * network. Anything not {@link DataSource#REMOTE} counts as a hit. Must be used on the main
+ * thread.
+ */
+class ImageCacheStats {
+    private static final String TAG = "ImageCacheStats";
+
+    private final String mName;
+    private final int[] mCounts = new int[DataSource.values().length];
+    private int mTotal;
+
+    ImageCacheStats(String name) {
+        mName = name;
+    }
+
+    void record(DataSource dataSource) {
+        mCounts[dataSource.ordinal()]++;
+        mTotal++;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, toString());
+        }
+    }
+
+    /**
+     * Returns the share of images not fetched from the network, or 0 before the first one.
+     */
+    float getHitRate() {
+        return mTotal == 0 ? 0 : 1f - (float) mCounts[DataSource.REMOTE.ordinal()] / mTotal;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(mName).append(": ").append(mTotal)
+                .append(" images, hit rate ").append(Math.round(getHitRate() * 100)).append('%');
+        for (DataSource dataSource : DataSource.values()) {
+            sb.append(", ").append(dataSource).append('=').append(mCounts[dataSource.ordinal()]);
+        }
+        return sb.toString();
+    }
+}
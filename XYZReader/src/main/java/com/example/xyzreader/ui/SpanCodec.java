@@ -0,0 +1,203 @@
+package com.example.xyzreader.ui;
+
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.BulletSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.QuoteSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.SubscriptSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Writes spanned text as its UTF-8 text followed by a table of spans, and reads it back. Only
+ * the span types {@link android.text.Html#fromHtml(String)} produces for article markup are
+ * supported, each stored with the few values it is built from, so the format does not depend on
+ * the platform version the way a marshalled {@link android.os.Parcel} does.
+ * <p>
+ * Layout: {@link #VERSION}, text length and bytes, span count, then per span its type, start,
+ * end, flags and type-specific values.
+ */
+final class SpanCodec {
+
+    /** Bumped whenever the layout changes; data of another version is not read. */
+    static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte STYLE = 1;
+    private static final byte UNDERLINE = 2;
+    private static final byte STRIKETHROUGH = 3;
+    private static final byte TYPEFACE = 4;
+    private static final byte RELATIVE_SIZE = 5;
+    private static final byte SUBSCRIPT = 6;
+    private static final byte SUPERSCRIPT = 7;
+    private static final byte URL = 8;
+    private static final byte FOREGROUND_COLOR = 9;
+    private static final byte BACKGROUND_COLOR = 10;
+    private static final byte QUOTE = 11;
+    private static final byte BULLET = 12;
+
+    private SpanCodec() {
+    }
+
+    /**
+     * Returns the encoded text, or {@code null} if it carries a span that cannot be encoded,
+     * such as an image.
+     */
+    static byte[] encode(CharSequence text) {
+        final Object[] spans = text instanceof Spanned
+                ? ((Spanned) text).getSpans(0, text.length(), Object.class) : new Object[0];
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(VERSION);
+            final byte[] chars = text.toString().getBytes(UTF_8);
+            out.writeInt(chars.length);
+            out.write(chars);
+            out.writeInt(spans.length);
+            for (Object span : spans) {
+                final Spanned spanned = (Spanned) text;
+                if (!writeType(out, span)) {
+                    return null;
+                }
+                out.writeInt(spanned.getSpanStart(span));
+                out.writeInt(spanned.getSpanEnd(span));
+                out.writeInt(spanned.getSpanFlags(span));
+                writeValues(out, span);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Not thrown by an in-memory stream.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads back text written by {@link #encode(CharSequence)}.
+     *
+     * @throws IOException if the data is truncated, of another version or otherwise corrupt
+     */
+    static CharSequence decode(byte[] data) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported span format version " + version);
+        }
+        final byte[] chars = new byte[in.readInt()];
+        in.readFully(chars);
+        final SpannableStringBuilder text = new SpannableStringBuilder(new String(chars, UTF_8));
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final byte type = in.readByte();
+            final int start = in.readInt();
+            final int end = in.readInt();
+            final int flags = in.readInt();
+            if (start < 0 || end < start || end > text.length()) {
+                throw new IOException("Span out of bounds: " + start + "-" + end);
+            }
+            text.setSpan(readSpan(in, type), start, end, flags);
+        }
+        return new SpannedString(text);
+    }
+
+    /**
+     * Matches exact classes only, so a platform subclass carrying more state is not stored as
+     * its parent.
+     */
+    private static boolean writeType(DataOutputStream out, Object span) throws IOException {
+        final Class<?> type = span.getClass();
+        final byte code;
+        if (type == StyleSpan.class) {
+            code = STYLE;
+        } else if (type == UnderlineSpan.class) {
+            code = UNDERLINE;
+        } else if (type == StrikethroughSpan.class) {
+            code = STRIKETHROUGH;
+        } else if (type == TypefaceSpan.class) {
+            code = TYPEFACE;
+        } else if (type == RelativeSizeSpan.class) {
+            code = RELATIVE_SIZE;
+        } else if (type == SubscriptSpan.class) {
+            code = SUBSCRIPT;
+        } else if (type == SuperscriptSpan.class) {
+            code = SUPERSCRIPT;
+        } else if (type == URLSpan.class) {
+            code = URL;
+        } else if (type == ForegroundColorSpan.class) {
+            code = FOREGROUND_COLOR;
+        } else if (type == BackgroundColorSpan.class) {
+            code = BACKGROUND_COLOR;
+        } else if (type == QuoteSpan.class) {
+            code = QUOTE;
+        } else if (type == BulletSpan.class) {
+            code = BULLET;
+        } else {
+            return false;
+        }
+        out.writeByte(code);
+        return true;
+    }
+
+    private static void writeValues(DataOutputStream out, Object span) throws IOException {
+        if (span instanceof StyleSpan) {
+            out.writeInt(((StyleSpan) span).getStyle());
+        } else if (span instanceof TypefaceSpan) {
+            out.writeUTF(((TypefaceSpan) span).getFamily());
+        } else if (span instanceof RelativeSizeSpan) {
+            out.writeFloat(((RelativeSizeSpan) span).getSizeChange());
+        } else if (span instanceof URLSpan) {
+            out.writeUTF(((URLSpan) span).getURL());
+        } else if (span instanceof ForegroundColorSpan) {
+            out.writeInt(((ForegroundColorSpan) span).getForegroundColor());
+        } else if (span instanceof BackgroundColorSpan) {
+            out.writeInt(((BackgroundColorSpan) span).getBackgroundColor());
+        }
+    }
+
+    private static Object readSpan(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case STYLE:
+                return new StyleSpan(in.readInt());
+            case UNDERLINE:
+                return new UnderlineSpan();
+            case STRIKETHROUGH:
+                return new StrikethroughSpan();
+            case TYPEFACE:
+                return new TypefaceSpan(in.readUTF());
+            case RELATIVE_SIZE:
+                return new RelativeSizeSpan(in.readFloat());
+            case SUBSCRIPT:
+                return new SubscriptSpan();
+            case SUPERSCRIPT:
+                return new SuperscriptSpan();
+            case URL:
+                return new URLSpan(in.readUTF());
+            case FOREGROUND_COLOR:
+                return new ForegroundColorSpan(in.readInt());
+            case BACKGROUND_COLOR:
+                return new BackgroundColorSpan(in.readInt());
+            case QUOTE:
+                return new QuoteSpan();
+            case BULLET:
+                return new BulletSpan();
+            default:
+                throw new IOException("Unknown span type " + type);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.xyzreader.ui;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Preloads the thumbnails of the items about to scroll into the article grid, so a fling does
+ * not show blank tiles while binds catch up.
+ * <p>
+ * Items are picked in the direction of the scroll. How far ahead to look adapts to the column
+ * count and to the scroll speed: at rest one row is preloaded, and each frame's worth of
+ * scrolling adds rows, up to a cap that keeps preloads from churning Glide's memory cache.
+ * <p>
+ * Every preload stays outstanding until the grid binds its item, which counts it as used. Once
+ * more preloads are outstanding than the largest lookahead, the oldest ones are given up on and
+ * counted as wasted.
+ */
+class ThumbnailPreloader extends RecyclerView.OnScrollListener {
+    private static final String TAG = "ThumbnailPreloader";
+
+    private static final int MIN_ROWS_AHEAD = 1;
+    private static final int MAX_ROWS_AHEAD = 6;
+    /** Scrolling time to cover with preloads, about the time a thumbnail takes to arrive. */
+    private static final int LOOKAHEAD_FRAMES = 30;
+    /** Weight of the newest frame in the smoothed scroll speed. */
+    private static final float SPEED_SMOOTHING = 0.3f;
+
+    private final Context mContext;
+    private final ArticleListAdapter mAdapter;
+    private final RequestManager mRequestManager;
+    private final int mColumnCount;
+    /** Rough height of a grid row, used to turn scroll speed into rows. */
+    private final int mRowHeight;
+
+    private final LinkedHashMap<String, Target<Drawable>> mOutstanding =
+            new LinkedHashMap<String, Target<Drawable>>();
+    private int[] mSpanPositions;
+
+    private float mSpeed;
+    private int mDirection = 1;
+
+    private int mPreloadedCount;
+    private int mUsedCount;
+    private int mWastedCount;
+
+    ThumbnailPreloader(Context context, ArticleListAdapter adapter, int columnCount) {
+        mContext = context;
+        mAdapter = adapter;
+        mRequestManager = Glide.with(context);
+        mColumnCount = columnCount;
+        mRowHeight = Math.max(1, ArticleImageOptions.getThumbnailWidth(context));
+        mSpanPositions = new int[columnCount];
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return;
+        }
+        mDirection = dy > 0 ? 1 : -1;
+        mSpeed += SPEED_SMOOTHING * (Math.abs(dy) - mSpeed);
+        preload((StaggeredGridLayoutManager) recyclerView.getLayoutManager());
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        mSpeed = 0;
+        preload((StaggeredGridLayoutManager) recyclerView.getLayoutManager());
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Preloaded " + mPreloadedCount + " thumbnails: " + mUsedCount + " used, "
+                    + mWastedCount + " wasted, " + mOutstanding.size() + " outstanding");
+        }
+    }
+
+    /**
+     * Tells the preloader the grid has bound the thumbnail at {@code url}.
+     */
+    void onThumbnailBound(String url) {
+        if (mOutstanding.remove(url) != null) {
+            mUsedCount++;
+        }
+    }
+
+    /**
+     * Returns the number of items to look ahead at the current speed.
+     */
+    int getLookahead() {
+        final int rows = MIN_ROWS_AHEAD + (int) (mSpeed * LOOKAHEAD_FRAMES / mRowHeight);
+        return mColumnCount * Math.min(rows, MAX_ROWS_AHEAD);
+    }
+
+    private void preload(StaggeredGridLayoutManager layoutManager) {
+        final int start;
+        if (mDirection > 0) {
+            start = max(layoutManager.findLastVisibleItemPositions(mSpanPositions)) + 1;
+        } else {
+            start = min(layoutManager.findFirstVisibleItemPositions(mSpanPositions)) - 1;
+        }
+        if (start < 0) {
+            return;
+        }
+
+        final int lookahead = getLookahead();
+        final int count = mAdapter.getItemCount();
+        for (int i = 0, position = start; i < lookahead; i++, position += mDirection) {
+            if (position < 0 || position >= count) {
+                break;
+            }
+            final String url = mAdapter.getThumbnailUrl(position);
+            if (url == null || mOutstanding.containsKey(url)) {
+                continue;
+            }
+            mOutstanding.put(url, mRequestManager
+                    .load(url)
+                    .apply(ArticleImageOptions.thumbnail(mContext, mAdapter.getAspectRatio(position)))
+                    .preload());
+            mPreloadedCount++;
+        }
+
+        trimOutstanding(mColumnCount * MAX_ROWS_AHEAD);
+    }
+
+    private void trimOutstanding(int maxSize) {
+        final Iterator<Map.Entry<String, Target<Drawable>>> it = mOutstanding.entrySet().iterator();
+        while (mOutstanding.size() > maxSize && it.hasNext()) {
+            // Cancels the decode if it is still running; a finished one stays in the cache.
+            mRequestManager.clear(it.next().getValue());
+            it.remove();
+            mWastedCount++;
+        }
+    }
+
+    private static int max(int[] positions) {
+        int max = RecyclerView.NO_POSITION;
+        for (int position : positions) {
+            max = Math.max(max, position);
+        }
+        return max;
+    }
+
+    private static int min(int[] positions) {
+        int min = Integer.MAX_VALUE;
+        for (int position : positions) {
+            if (position != RecyclerView.NO_POSITION) {
+                min = Math.min(min, position);
+            }
+        }
+        return min == Integer.MAX_VALUE ? RecyclerView.NO_POSITION : min;
+    }
+}
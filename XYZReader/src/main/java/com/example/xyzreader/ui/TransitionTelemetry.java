@@ -0,0 +1,119 @@
+package com.example.xyzreader.ui;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Latencies of one kind of postponed enter transition, kept for the process so they can be
+ * compared across runs and releases.
+ * <p>
+ * Every transition is measured from the moment the user asked for the screen, usually the tap
+ * that opened it, to three points: the image the transition waits for being ready, the
+ * transition being started, and the transition having ended. The most recent samples of each are
+ * kept and reported as percentiles.
+ */
+final class TransitionTelemetry {
+    private static final String TAG = "TransitionTelemetry";
+
+    /** Samples kept per phase; older ones are overwritten. */
+    private static final int WINDOW = 128;
+
+    private static final Map<String, TransitionTelemetry> sInstances =
+            new HashMap<String, TransitionTelemetry>();
+
+    enum Phase {
+        IMAGE_READY, TRANSITION_START, TRANSITION_END
+    }
+
+    private final String mName;
+    private final long[][] mSamples = new long[Phase.values().length][WINDOW];
+    private final int[] mCounts = new int[Phase.values().length];
+    private int mTransitionCount;
+    private int mTimeoutCount;
+
+    private TransitionTelemetry(String name) {
+        mName = name;
+    }
+
+    /**
+     * Returns the telemetry for the transitions called {@code name}.
+     */
+    static synchronized TransitionTelemetry get(String name) {
+        TransitionTelemetry telemetry = sInstances.get(name);
+        if (telemetry == null) {
+            telemetry = new TransitionTelemetry(name);
+            sInstances.put(name, telemetry);
+        }
+        return telemetry;
+    }
+
+    /**
+     * Records one transition. Times are {@link android.os.SystemClock#uptimeMillis()} values;
+     * {@code imageReadyTime} is 0 if the image was not ready before the transition started.
+     */
+    synchronized void record(long tapTime, long imageReadyTime, long startTime, long endTime,
+                             boolean timedOut) {
+        mTransitionCount++;
+        if (timedOut) {
+            mTimeoutCount++;
+        }
+        if (imageReadyTime > 0) {
+            add(Phase.IMAGE_READY, imageReadyTime - tapTime);
+        }
+        add(Phase.TRANSITION_START, startTime - tapTime);
+        add(Phase.TRANSITION_END, endTime - tapTime);
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, toString());
+        }
+    }
+
+    /**
+     * Returns the given percentile, from 0 to 100, of the milliseconds from tap to
+     * {@code phase} over the recent samples, or -1 if there are none.
+     */
+    synchronized long getPercentile(Phase phase, int percentile) {
+        final int count = Math.min(mCounts[phase.ordinal()], WINDOW);
+        if (count == 0) {
+            return -1;
+        }
+        final long[] sorted = Arrays.copyOf(mSamples[phase.ordinal()], count);
+        Arrays.sort(sorted);
+        // Nearest rank.
+        final int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    synchronized int getTransitionCount() {
+        return mTransitionCount;
+    }
+
+    /**
+     * Returns the number of transitions started by the watchdog rather than by their image.
+     */
+    synchronized int getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder(mName)
+                .append(": ").append(mTransitionCount).append(" transitions, ")
+                .append(mTimeoutCount).append(" timed out");
+        for (Phase phase : Phase.values()) {
+            sb.append("; ").append(phase)
+                    .append(" p50=").append(getPercentile(phase, 50))
+                    .append(" p90=").append(getPercentile(phase, 90))
+                    .append(" p99=").append(getPercentile(phase, 99));
+        }
+        return sb.toString();
+    }
+
+    private void add(Phase phase, long millis) {
+        final int index = mCounts[phase.ordinal()]++ % WINDOW;
+        mSamples[phase.ordinal()][index] = millis;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.xyzreader.ui;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.transition.Transition;
+import android.util.Log;
+
+import com.example.xyzreader.R;
+
+/**
+ * Postpones an activity's enter transition until the image it animates is ready, but no longer
+ * than {@code R.integer.transition_watchdog_timeout_ms}: a stalled image request then starts the
+ * transition anyway instead of leaving the screen frozen until the system gives up.
+ * <p>
+ * Each transition's timings are recorded in the {@link TransitionTelemetry} of the same name.
+ * Must be used on the main thread.
+ */
+class TransitionWatchdog {
+    private static final String TAG = "TransitionWatchdog";
+
+    private final Activity mActivity;
+    private final TransitionTelemetry mTelemetry;
+    private final boolean mSharedElement;
+    private final long mTimeoutMillis;
+    private final Handler mHandler = new Handler();
+
+    private boolean mPostponed;
+    private boolean mTimedOut;
+    private long mTapTime;
+    private long mImageReadyTime;
+    private long mStartTime;
+
+    private final Runnable mDeadline = new Runnable() {
+        @Override
+        public void run() {
+            Log.w(TAG, "Image not ready after " + mTimeoutMillis + "ms, starting transition");
+            mTimedOut = true;
+            start();
+        }
+    };
+
+    /**
+     * @param sharedElement whether the activity enters with a shared element transition, whose
+     *                      end is then timed; otherwise nothing animates and the transition
+     *                      counts as ended when it starts
+     */
+    TransitionWatchdog(Activity activity, String name, boolean sharedElement) {
+        mActivity = activity;
+        mTelemetry = TransitionTelemetry.get(name);
+        mSharedElement = sharedElement;
+        mTimeoutMillis = activity.getResources().getInteger(R.integer.transition_watchdog_timeout_ms);
+    }
+
+    /**
+     * Postpones the enter transition. {@code tapTime} is the
+     * {@link SystemClock#uptimeMillis()} at which the user asked for the screen.
+     */
+    void postpone(long tapTime) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        mActivity.postponeEnterTransition();
+        mPostponed = true;
+        mTimedOut = false;
+        mTapTime = tapTime;
+        mImageReadyTime = 0;
+        mHandler.postDelayed(mDeadline, mTimeoutMillis);
+    }
+
+    /**
+     * Starts the postponed transition, if it has not been started yet, now that its image is
+     * ready or has failed.
+     */
+    void onImageReady() {
+        if (!mPostponed) {
+            return;
+        }
+        mImageReadyTime = SystemClock.uptimeMillis();
+        start();
+    }
+
+    /**
+     * Drops the deadline, when the activity goes away before its transition started.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mDeadline);
+        mPostponed = false;
+    }
+
+    private void start() {
+        mHandler.removeCallbacks(mDeadline);
+        mPostponed = false;
+        mStartTime = SystemClock.uptimeMillis();
+
+        final Transition transition = mSharedElement
+                ? mActivity.getWindow().getSharedElementEnterTransition()
+                : null;
+        if (transition != null) {
+            transition.addListener(new EndListener(transition, mTapTime, mImageReadyTime,
+                    mStartTime, mTimedOut));
+        } else {
+            mTelemetry.record(mTapTime, mImageReadyTime, mStartTime, mStartTime, mTimedOut);
+        }
+        mActivity.startPostponedEnterTransition();
+    }
+
+    /**
+     * Records the transition when it ends, then detaches itself from the window's transition,
+     * which is reused for later transitions of the same activity.
+     */
+    private class EndListener implements Transition.TransitionListener {
+        private final Transition mTransition;
+        private final long mTap;
+        private final long mImageReady;
+        private final long mStart;
+        private final boolean mStartedByDeadline;
+
+        EndListener(Transition transition, long tap, long imageReady, long start,
+                    boolean startedByDeadline) {
+            mTransition = transition;
+            mTap = tap;
+            mImageReady = imageReady;
+            mStart = start;
+            mStartedByDeadline = startedByDeadline;
+        }
+
+        @Override
+        public void onTransitionEnd(Transition transition) {
+            mTransition.removeListener(this);
+            mTelemetry.record(mTap, mImageReady, mStart, SystemClock.uptimeMillis(),
+                    mStartedByDeadline);
+        }
+
+        @Override
+        public void onTransitionCancel(Transition transition) {
+            mTransition.removeListener(this);
+        }
+
+        @Override
+        public void onTransitionStart(Transition transition) {
+        }
+
+        @Override
+        public void onTransitionPause(Transition transition) {
+        }
+
+        @Override
+        public void onTransitionResume(Transition transition) {
+        }
+    }
+}
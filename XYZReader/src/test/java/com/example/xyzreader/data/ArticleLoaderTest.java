@@ -0,0 +1,172 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ArticleLoaderTest {
+
+    /** Runs of equal dates, so page boundaries fall inside ties. */
+    private static final long[] PUBLISHED_DATES = {300, 200, 200, 200, 200, 200, 100, 100, 100, 50};
+
+    private Context mContext;
+    private ItemsDatabase mDatabase;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mDatabase = new ItemsDatabase(mContext);
+        mDb = mDatabase.getWritableDatabase();
+        for (int i = 0; i < PUBLISHED_DATES.length; i++) {
+            final ContentValues values = new ContentValues();
+            values.put(ItemsContract.Items.SERVER_ID, "item" + i);
+            values.put(ItemsContract.Items.TITLE, "Title " + i);
+            values.put(ItemsContract.Items.AUTHOR, "Author");
+            values.put(ItemsContract.Items.BODY, "Body");
+            values.put(ItemsContract.Items.THUMB_URL, "thumb" + i);
+            values.put(ItemsContract.Items.PHOTO_URL, "photo" + i);
+            values.put(ItemsContract.Items.PUBLISHED_DATE, PUBLISHED_DATES[i]);
+            mDb.insertOrThrow(ItemsProvider.Tables.ITEMS, null, values);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void pagesCoverTheListOnceWhateverThePageSize() {
+        final List<Long> expected = ids(query(null, null, null, null));
+        for (int limit = 1; limit <= PUBLISHED_DATES.length; limit++) {
+            final List<Long> paged = new ArrayList<Long>();
+            ArticleLoader.Key after = null;
+            while (true) {
+                final Cursor page = load(ArticleLoader.newPageInstance(mContext, after, null, limit));
+                try {
+                    if (!page.moveToLast()) {
+                        break;
+                    }
+                    after = ArticleLoader.Key.of(page);
+                    paged.addAll(ids(page));
+                } finally {
+                    page.close();
+                }
+            }
+            assertEquals("limit " + limit, expected, paged);
+        }
+    }
+
+    @Test
+    public void pinnedPageEndsAtItsUntilKeyInsideATie() {
+        final Cursor all = query(null, null, null, null);
+        final List<ArticleLoader.Key> keys = new ArrayList<ArticleLoader.Key>();
+        try {
+            while (all.moveToNext()) {
+                keys.add(ArticleLoader.Key.of(all));
+            }
+        } finally {
+            all.close();
+        }
+
+        // Rows 1 to 5 share a date; start after row 2 and stop at row 4.
+        final Cursor page = load(ArticleLoader.newPageInstance(mContext, keys.get(2), keys.get(4),
+                PUBLISHED_DATES.length));
+        try {
+            final List<Long> ids = ids(page);
+            assertEquals(2, ids.size());
+            assertEquals(keys.get(3).id, (long) ids.get(0));
+            assertEquals(keys.get(4).id, (long) ids.get(1));
+        } finally {
+            page.close();
+        }
+    }
+
+    @Test
+    public void listWalksThePublishedDateIndex() {
+        assertWalksPublishedDateIndex(queryPlan(ArticleLoader.newAllArticlesInstance(mContext)),
+                "SCAN");
+    }
+
+    @Test
+    public void keysetPagesSeekIntoThePublishedDateIndex() {
+        final ArticleLoader.Key after = new ArticleLoader.Key(200, 3);
+        final ArticleLoader.Key until = new ArticleLoader.Key(100, 8);
+        assertWalksPublishedDateIndex(queryPlan(
+                ArticleLoader.newPageInstance(mContext, after, null, 5)), "SEARCH");
+        assertWalksPublishedDateIndex(queryPlan(
+                ArticleLoader.newPageInstance(mContext, after, until, 5)), "SEARCH");
+    }
+
+    /**
+     * Checks that the plan reads {@code items} through the published date index, in its order.
+     * Older SQLite versions say "SCAN TABLE items" where newer ones say "SCAN items".
+     */
+    private static void assertWalksPublishedDateIndex(String plan, String access) {
+        assertTrue(plan, plan.startsWith(access + " "));
+        assertTrue(plan, plan.contains("USING INDEX " + ItemsProvider.Tables.ITEMS + "_"
+                + ItemsContract.Items.PUBLISHED_DATE));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    /**
+     * Returns the detail lines of the loader's EXPLAIN QUERY PLAN, one per line.
+     */
+    private String queryPlan(ArticleLoader loader) {
+        final String sql = SQLiteQueryBuilder.buildQueryString(false, ItemsProvider.Tables.ITEMS,
+                ArticleLoader.Query.PROJECTION, loader.getSelection(), null, null,
+                loader.getSortOrder(),
+                loader.getUri().getQueryParameter(ItemsContract.QUERY_PARAMETER_LIMIT));
+        final Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, loader.getSelectionArgs());
+        try {
+            final StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Cursor load(ArticleLoader loader) {
+        return query(loader.getSelection(), loader.getSelectionArgs(), loader.getSortOrder(),
+                loader.getUri().getQueryParameter(ItemsContract.QUERY_PARAMETER_LIMIT));
+    }
+
+    private Cursor query(String selection, String[] selectionArgs, String sortOrder, String limit) {
+        return mDb.query(ItemsProvider.Tables.ITEMS, ArticleLoader.Query.PROJECTION, selection,
+                selectionArgs, null, null,
+                sortOrder != null ? sortOrder : ItemsContract.Items.DEFAULT_SORT, limit);
+    }
+
+    private static List<Long> ids(Cursor cursor) {
+        final List<Long> ids = new ArrayList<Long>();
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getLong(ArticleLoader.Query._ID));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.util.JsonReader;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class FeedSyncTest {
+
+    private ContentResolver mResolver;
+    private FeedSync mSync;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(ItemsProvider.class)
+                .create(ItemsContract.CONTENT_AUTHORITY);
+        final Context context = ApplicationProvider.getApplicationContext();
+        mResolver = context.getContentResolver();
+        mSync = new FeedSync(context);
+    }
+
+    @Test
+    public void newItemsAreInserted() throws Exception {
+        store(item("1", "One"), item("2", "Two"));
+
+        final Map<String, String> titles = queryTitles();
+        assertEquals(2, titles.size());
+        assertEquals("One", titles.get("1"));
+        assertEquals("Two", titles.get("2"));
+    }
+
+    @Test
+    public void changedItemIsUpdatedInPlace() throws Exception {
+        store(item("1", "One"));
+        final long id = queryId("1");
+        setMutedColor("1", 0xff112233);
+
+        store(item("1", "One, revised"));
+
+        assertEquals(id, queryId("1"));
+        assertEquals("One, revised", queryTitles().get("1"));
+        // The photo may have changed with the rest, so its colors are extracted again.
+        assertTrue(isMutedColorNull("1"));
+    }
+
+    @Test
+    public void unchangedItemIsLeftAlone() throws Exception {
+        store(item("1", "One"));
+        setMutedColor("1", 0xff112233);
+
+        store(item("1", "One"));
+
+        assertFalse(isMutedColorNull("1"));
+    }
+
+    @Test
+    public void itemsGoneFromTheFeedAreDeleted() throws Exception {
+        store(item("1", "One"), item("2", "Two"));
+
+        store(item("2", "Two"));
+
+        final Map<String, String> titles = queryTitles();
+        assertEquals(1, titles.size());
+        assertTrue(titles.containsKey("2"));
+    }
+
+    @Test
+    public void duplicateIdsKeepTheFirstItem() throws Exception {
+        store(item("1", "First"), item("1", "Second"));
+
+        final Map<String, String> titles = queryTitles();
+        assertEquals(1, titles.size());
+        assertEquals("First", titles.get("1"));
+    }
+
+    @Test
+    public void itemsWithoutAnIdAreSkipped() throws Exception {
+        final String noId = "{\"title\":\"Orphan\",\"author\":\"A\",\"body\":\"B\","
+                + "\"thumb\":\"t\",\"photo\":\"p\"}";
+        store(noId, item("1", "One"));
+        store(noId, item("1", "One"));
+
+        final Map<String, String> titles = queryTitles();
+        assertEquals(1, titles.size());
+        assertTrue(titles.containsKey("1"));
+    }
+
+    private void store(String... items) throws Exception {
+        final StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < items.length; i++) {
+            feed.append(i > 0 ? "," : "").append(items[i]);
+        }
+        feed.append(']');
+        try (JsonReader reader = new JsonReader(new StringReader(feed.toString()))) {
+            mSync.storeItems(reader);
+        }
+    }
+
+    private static String item(String serverId, String title) {
+        return "{\"id\":\"" + serverId + "\",\"title\":\"" + title + "\",\"author\":\"Author\","
+                + "\"body\":\"Body\",\"thumb\":\"https://example.com/" + serverId + "-t.jpg\","
+                + "\"photo\":\"https://example.com/" + serverId + ".jpg\","
+                + "\"aspect_ratio\":\"1.5\",\"published_date\":\"2018-03-01T10:00:00.00Z\"}";
+    }
+
+    private Map<String, String> queryTitles() {
+        final Map<String, String> titles = new LinkedHashMap<String, String>();
+        try (Cursor cursor = mResolver.query(ItemsContract.Items.buildDirUri(),
+                new String[]{ItemsContract.Items.SERVER_ID, ItemsContract.Items.TITLE},
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                titles.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        return titles;
+    }
+
+    private long queryId(String serverId) {
+        try (Cursor cursor = queryItem(serverId, ItemsContract.Items._ID)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private boolean isMutedColorNull(String serverId) {
+        try (Cursor cursor = queryItem(serverId, ItemsContract.Items.MUTED_COLOR)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.isNull(0);
+        }
+    }
+
+    private Cursor queryItem(String serverId, String column) {
+        return mResolver.query(ItemsContract.Items.buildDirUri(), new String[]{column},
+                ItemsContract.Items.SERVER_ID + "=?", new String[]{serverId}, null);
+    }
+
+    private void setMutedColor(String serverId, int color) {
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.MUTED_COLOR, color);
+        assertEquals(1, mResolver.update(ItemsContract.Items.buildDirUri(), values,
+                ItemsContract.Items.SERVER_ID + "=?", new String[]{serverId}));
+    }
+}
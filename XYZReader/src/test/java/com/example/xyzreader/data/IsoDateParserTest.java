@@ -0,0 +1,73 @@
+package com.example.xyzreader.data;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class IsoDateParserTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    /** 2013-06-20T00:00:00Z */
+    private static final long JUNE_20_2013 = 1371686400000L;
+
+    @Test
+    public void feedTimestampsAreRead() {
+        assertEquals(JUNE_20_2013, parse("2013-06-20T00:00:00.000Z", UTC));
+        assertEquals(JUNE_20_2013, parse("2013-06-20T00:00:00.000Z", NEW_YORK));
+        assertEquals(JUNE_20_2013 + 123, parse("2013-06-20T00:00:00.123456Z", UTC));
+        assertEquals(JUNE_20_2013 + 100, parse("2013-06-20T00:00:00,1Z", UTC));
+        assertEquals(-1000L, parse("1969-12-31T23:59:59Z", UTC));
+    }
+
+    @Test
+    public void zoneDesignatorsAreApplied() {
+        assertEquals(JUNE_20_2013, parse("2013-06-20T02:00:00+02:00", NEW_YORK));
+        assertEquals(JUNE_20_2013, parse("2013-06-20T02:00+0200", NEW_YORK));
+        assertEquals(JUNE_20_2013, parse("2013-06-19T19:30:00-04:30", NEW_YORK));
+        assertEquals(JUNE_20_2013, parse("2013-06-20T03:00:00+03", NEW_YORK));
+    }
+
+    @Test
+    public void timestampsWithoutAZoneAreLocalTime() {
+        assertEquals(JUNE_20_2013, parse("2013-06-20", UTC));
+        // Daylight saving time in summer, standard time in winter.
+        assertEquals(JUNE_20_2013 + 4 * 3600000L, parse("2013-06-20", NEW_YORK));
+        assertEquals(JUNE_20_2013 + 4 * 3600000L, parse("2013-06-20T00:00:00.000", NEW_YORK));
+        assertEquals(1358269200000L, parse("2013-01-15T12:00:00", NEW_YORK));
+    }
+
+    @Test
+    public void dayIsCheckedAgainstTheLengthOfItsMonth() {
+        assertEquals(1582934400000L, parse("2020-02-29", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2019-02-29", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("1900-02-29", UTC));
+        assertEquals(parse("2000-03-01", UTC) - 86400000L, parse("2000-02-29", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2018-02-31", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2018-04-31", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2018-12-32", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2018-12-00", UTC));
+    }
+
+    @Test
+    public void malformedTextIsInvalid() {
+        assertEquals(IsoDateParser.INVALID, parse("", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("garbage", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013/06/20", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-13-20", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20T24:00:00Z", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20T10:60:00Z", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20T10:00:00.Z", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20T10", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20T10:00:00Zjunk", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20X", UTC));
+        assertEquals(IsoDateParser.INVALID, parse("2013-06-20T10:00:00+ab:00", UTC));
+    }
+
+    private static long parse(String text, TimeZone zone) {
+        return IsoDateParser.parse(text, zone);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ItemsDatabaseTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private ItemsDatabase mDatabase;
+    private SQLiteDatabase mDb;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mDatabase = new ItemsDatabase(ApplicationProvider.getApplicationContext());
+        mDb = mDatabase.getWritableDatabase();
+        mExecutor = Executors.newFixedThreadPool(2);
+        insertItem(mDb, "committed");
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mDatabase.close();
+    }
+
+    @Test
+    public void readsAreNotBlockedByAnOpenWriteTransaction() throws Exception {
+        final CountDownLatch inTransaction = new CountDownLatch(1);
+        final CountDownLatch readDone = new CountDownLatch(1);
+        final Future<Boolean> writer = mExecutor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                mDb.beginTransactionNonExclusive();
+                try {
+                    insertItem(mDb, "pending");
+                    inTransaction.countDown();
+                    final boolean read = readDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    mDb.setTransactionSuccessful();
+                    return read;
+                } finally {
+                    mDb.endTransaction();
+                }
+            }
+        });
+        assertTrue(inTransaction.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // Would time out if the reader had to wait for the writer's connection.
+        final Future<Long> reader = mExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return DatabaseUtils.queryNumEntries(mDb, ItemsProvider.Tables.ITEMS);
+            }
+        });
+        assertEquals("sees only committed rows", 1L,
+                (long) reader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        readDone.countDown();
+
+        assertTrue(writer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2L, DatabaseUtils.queryNumEntries(mDb, ItemsProvider.Tables.ITEMS));
+    }
+
+    @Test
+    public void tuningAppliesToThePrimaryConnection() {
+        // A transaction pins the statements to the primary connection, the only one configured.
+        mDb.beginTransactionNonExclusive();
+        try {
+            assertEquals(ItemsDatabase.TuningProfile.BALANCED.pageSize, queryPragma("page_size"));
+            assertEquals(ItemsDatabase.TuningProfile.BALANCED.cacheSize, queryPragma("cache_size"));
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private long queryPragma(String pragma) {
+        final Cursor cursor = mDb.rawQuery("PRAGMA " + pragma, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void insertItem(SQLiteDatabase db, String serverId) {
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.SERVER_ID, serverId);
+        values.put(ItemsContract.Items.TITLE, "Title");
+        values.put(ItemsContract.Items.AUTHOR, "Author");
+        values.put(ItemsContract.Items.BODY, "Body");
+        values.put(ItemsContract.Items.THUMB_URL, "thumb");
+        values.put(ItemsContract.Items.PHOTO_URL, "photo");
+        db.insertOrThrow(ItemsProvider.Tables.ITEMS, null, values);
+    }
+}
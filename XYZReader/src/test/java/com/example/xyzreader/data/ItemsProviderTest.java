@@ -0,0 +1,247 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ItemsProviderTest {
+
+    private static final Uri DIR_URI = ItemsContract.Items.buildDirUri();
+
+    private ContentResolver mResolver;
+    private ShadowContentResolver mShadowResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(ItemsProvider.class)
+                .create(ItemsContract.CONTENT_AUTHORITY);
+        final Context context = ApplicationProvider.getApplicationContext();
+        mResolver = context.getContentResolver();
+        mShadowResolver = shadowOf(mResolver);
+    }
+
+    @Test
+    public void bulkInsertWritesEveryRowAndItsParagraphs() {
+        final ContentValues[] rows = new ContentValues[120];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = item("server-" + i, "First " + i + "\n\nSecond " + i);
+        }
+
+        assertEquals(rows.length, mResolver.bulkInsert(DIR_URI, rows));
+
+        assertEquals(rows.length, count(DIR_URI));
+        final long id = queryId("server-42");
+        final List<String> paragraphs = queryParagraphs(id);
+        assertEquals(2, paragraphs.size());
+        assertEquals("First 42", paragraphs.get(0));
+        assertEquals("Second 42", paragraphs.get(1));
+    }
+
+    @Test
+    public void bulkInsertFollowsChangingColumnSets() {
+        final ContentValues wider = item("wider", "Body");
+        wider.put(ItemsContract.Items.ASPECT_RATIO, 2.0);
+        // Same number of columns as a plain item, but not the same ones.
+        final ContentValues other = item(null, "Body");
+        other.put(ItemsContract.Items.PUBLISHED_DATE, 1234L);
+        final ContentValues again = item("again", "Body");
+
+        assertEquals(4, mResolver.bulkInsert(DIR_URI, new ContentValues[]{
+                item("plain", "Body"), wider, other, again}));
+
+        assertEquals(4, count(DIR_URI));
+        assertEquals(1.5, queryDouble("plain", ItemsContract.Items.ASPECT_RATIO), 0);
+        assertEquals(2.0, queryDouble("wider", ItemsContract.Items.ASPECT_RATIO), 0);
+        assertEquals(1.5, queryDouble("again", ItemsContract.Items.ASPECT_RATIO), 0);
+        assertEquals(1, count(DIR_URI, ItemsContract.Items.SERVER_ID + " IS NULL AND "
+                + ItemsContract.Items.PUBLISHED_DATE + "=1234"));
+    }
+
+    @Test
+    public void bulkInsertNotifiesOnce() {
+        final ContentValues[] rows = new ContentValues[10];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = item("server-" + i, "Body");
+        }
+        final int notifiedBefore = mShadowResolver.getNotifiedUris().size();
+
+        mResolver.bulkInsert(DIR_URI, rows);
+
+        final List<Uri> notified = notifiedSince(notifiedBefore);
+        assertEquals(1, notified.size());
+        assertEquals(DIR_URI, notified.get(0));
+    }
+
+    @Test
+    public void failedBulkInsertRollsBackWithoutNotifying() {
+        final ContentValues untitled = item("untitled", "Body");
+        untitled.remove(ItemsContract.Items.TITLE);
+        final int notifiedBefore = mShadowResolver.getNotifiedUris().size();
+
+        try {
+            mResolver.bulkInsert(DIR_URI, new ContentValues[]{item("kept", "Body"), untitled});
+            fail("Expected the NOT NULL constraint to fail");
+        } catch (SQLiteException expected) {
+        }
+
+        assertEquals(0, count(DIR_URI));
+        assertEquals(0, notifiedSince(notifiedBefore).size());
+    }
+
+    @Test
+    public void batchNotifiesOncePerUri() throws Exception {
+        mResolver.bulkInsert(DIR_URI, new ContentValues[]{
+                item("a", "Body"), item("b", "Body"), item("c", "Body")});
+        final int notifiedBefore = mShadowResolver.getNotifiedUris().size();
+        final long coalescedBefore = ItemsProvider.getCoalescedNotificationCount();
+
+        final ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>();
+        for (String serverId : new String[]{"a", "b", "c"}) {
+            operations.add(ContentProviderOperation.newUpdate(DIR_URI)
+                    .withSelection(ItemsContract.Items.SERVER_ID + "=?", new String[]{serverId})
+                    .withValue(ItemsContract.Items.TITLE, "Updated " + serverId)
+                    .build());
+        }
+        operations.add(ContentProviderOperation.newDelete(DIR_URI)
+                .withSelection(ItemsContract.Items.SERVER_ID + "=?", new String[]{"c"})
+                .build());
+        mResolver.applyBatch(ItemsContract.CONTENT_AUTHORITY, operations);
+
+        final List<Uri> notified = notifiedSince(notifiedBefore);
+        assertEquals(1, notified.size());
+        assertEquals(DIR_URI, notified.get(0));
+        assertEquals(3, ItemsProvider.getCoalescedNotificationCount() - coalescedBefore);
+        assertEquals(2, count(DIR_URI, ItemsContract.Items.TITLE + " LIKE 'Updated %'"));
+    }
+
+    @Test
+    public void failedBatchRollsBackWithoutNotifying() throws Exception {
+        mResolver.bulkInsert(DIR_URI, new ContentValues[]{item("a", "Body")});
+        final int notifiedBefore = mShadowResolver.getNotifiedUris().size();
+
+        final ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(DIR_URI)
+                .withValues(item("b", "Body"))
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(DIR_URI)
+                .withSelection(ItemsContract.Items.SERVER_ID + "=?", new String[]{"a"})
+                .withValue(ItemsContract.Items.TITLE, "Updated")
+                .build());
+        operations.add(ContentProviderOperation.newAssertQuery(DIR_URI)
+                .withExpectedCount(99)
+                .build());
+        try {
+            mResolver.applyBatch(ItemsContract.CONTENT_AUTHORITY, operations);
+            fail("Expected the assertion to fail");
+        } catch (OperationApplicationException expected) {
+        }
+
+        assertEquals(1, count(DIR_URI));
+        assertEquals(0, count(DIR_URI, ItemsContract.Items.TITLE + "='Updated'"));
+        assertEquals(0, notifiedSince(notifiedBefore).size());
+    }
+
+    /** The URIs observers were notified of, in order, after the first {@code before}. */
+    private List<Uri> notifiedSince(int before) {
+        final List<ShadowContentResolver.NotifiedUri> all = mShadowResolver.getNotifiedUris();
+        final List<Uri> uris = new ArrayList<Uri>();
+        for (int i = before; i < all.size(); i++) {
+            uris.add(all.get(i).uri);
+        }
+        return uris;
+    }
+
+    private static ContentValues item(String serverId, String body) {
+        final ContentValues values = new ContentValues();
+        if (serverId != null) {
+            values.put(ItemsContract.Items.SERVER_ID, serverId);
+        }
+        values.put(ItemsContract.Items.TITLE, "Title");
+        values.put(ItemsContract.Items.AUTHOR, "Author");
+        values.put(ItemsContract.Items.BODY, body);
+        values.put(ItemsContract.Items.THUMB_URL, "thumb");
+        values.put(ItemsContract.Items.PHOTO_URL, "photo");
+        return values;
+    }
+
+    private int count(Uri uri) {
+        return count(uri, null);
+    }
+
+    private int count(Uri uri, String selection) {
+        final Cursor cursor = mResolver.query(uri, new String[]{ItemsContract.Items._ID},
+                selection, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long queryId(String serverId) {
+        final Cursor cursor = queryItem(serverId, ItemsContract.Items._ID);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private double queryDouble(String serverId, String column) {
+        final Cursor cursor = queryItem(serverId, column);
+        try {
+            cursor.moveToFirst();
+            return cursor.getDouble(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Cursor queryItem(String serverId, String column) {
+        return mResolver.query(DIR_URI, new String[]{column},
+                ItemsContract.Items.SERVER_ID + "=?", new String[]{serverId}, null);
+    }
+
+    private List<String> queryParagraphs(long itemId) {
+        final List<String> paragraphs = new ArrayList<String>();
+        final Cursor cursor = mResolver.query(
+                ItemsContract.Paragraphs.buildItemParagraphsUri(itemId),
+                new String[]{ItemsContract.Paragraphs.TEXT}, null, null,
+                ItemsContract.Paragraphs.DEFAULT_SORT);
+        try {
+            while (cursor.moveToNext()) {
+                paragraphs.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return paragraphs;
+    }
+}
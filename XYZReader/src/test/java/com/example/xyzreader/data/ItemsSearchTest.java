@@ -0,0 +1,158 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ItemsSearchTest {
+
+    private static final String[] PROJECTION = {
+            ItemsContract.Search._ID,
+            ItemsContract.Search.RANK,
+    };
+
+    private ItemsDatabase mDatabase;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDatabase = new ItemsDatabase(ApplicationProvider.getApplicationContext());
+        mDb = mDatabase.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void everyWordIsQuotedAndOnlyTheLastIsAPrefix() {
+        assertEquals("\"river\" \"lig*\"", ItemsSearch.toMatchExpression("  river   lig "));
+        assertEquals("\"don't*\"", ItemsSearch.toMatchExpression("don't"));
+    }
+
+    @Test
+    public void blankQueriesMatchNothing() {
+        assertNull(ItemsSearch.toMatchExpression(null));
+        assertNull(ItemsSearch.toMatchExpression(""));
+        assertNull(ItemsSearch.toMatchExpression(" \t "));
+        assertNull(ItemsSearch.toMatchExpression("\" * - \""));
+    }
+
+    @Test
+    public void operatorsAreSearchedForAsText() {
+        assertEquals("\"say\" \"hi*\"", ItemsSearch.toMatchExpression("say \"hi*"));
+        assertEquals("\"cats\" \"NEAR\" \"dogs*\"",
+                ItemsSearch.toMatchExpression("cats NEAR dogs"));
+        assertEquals("\"cats\" \"OR\" \"NEAR/2*\"", ItemsSearch.toMatchExpression("cats OR NEAR/2"));
+        assertEquals("\"river\" \"sea*\"", ItemsSearch.toMatchExpression("-river sea-"));
+        assertEquals("\"river*\"", ItemsSearch.toMatchExpression("river -"));
+    }
+
+    @Test
+    public void malformedLookingQueriesStillRun() {
+        final long id = insertItem("Near the river", "Author", "A walk down to the water.");
+
+        assertEquals(Arrays.asList(id), search("river -"));
+        assertEquals(Arrays.asList(id), search("NEAR riv"));
+        assertEquals(Arrays.asList(id), search("\"near* -the"));
+        assertTrue(search("NEAR/2 river OR \"").isEmpty());
+    }
+
+    @Test
+    public void titleMatchesRankAboveBodyMatches() {
+        final long inBody = insertItem("Notes", "Author",
+                "A long body that mentions the lighthouse once among many other words.");
+        final long inTitle = insertItem("The lighthouse", "Author", "Nothing else here.");
+        insertItem("Unrelated", "Author", "Nothing to see.");
+
+        assertEquals(Arrays.asList(inTitle, inBody), search("lighthouse"));
+    }
+
+    @Test
+    public void moreFrequentTermsRankHigher() {
+        final long once = insertItem("One", "Author", "tide and other water words");
+        final long thrice = insertItem("Two", "Author", "tide tide tide and water");
+
+        assertEquals(Arrays.asList(thrice, once), search("tide"));
+        final List<Double> ranks = searchRanks("tide");
+        assertTrue(ranks.get(0) > ranks.get(1));
+    }
+
+    @Test
+    public void indexFollowsUpdates() {
+        final long id = insertItem("Old title", "Author", "Body");
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.TITLE, "Fresh title");
+        mDb.update(ItemsProvider.Tables.ITEMS, values, ItemsContract.Items._ID + "=?",
+                new String[]{Long.toString(id)});
+
+        assertTrue(search("old").isEmpty());
+        assertEquals(Arrays.asList(id), search("fresh"));
+    }
+
+    @Test
+    public void indexFollowsDeletes() {
+        final long id = insertItem("Lighthouse", "Author", "Body");
+        final long kept = insertItem("Lighthouse keeper", "Author", "Body");
+        mDb.delete(ItemsProvider.Tables.ITEMS, ItemsContract.Items._ID + "=?",
+                new String[]{Long.toString(id)});
+
+        assertEquals(Arrays.asList(kept), search("lighthouse"));
+    }
+
+    private List<Long> search(String query) {
+        final List<Long> ids = new ArrayList<Long>();
+        final Cursor cursor = ItemsSearch.query(mDb, query, PROJECTION, 10);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private List<Double> searchRanks(String query) {
+        final List<Double> ranks = new ArrayList<Double>();
+        final Cursor cursor = ItemsSearch.query(mDb, query, PROJECTION, 10);
+        try {
+            while (cursor.moveToNext()) {
+                ranks.add(cursor.getDouble(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ranks;
+    }
+
+    private long insertItem(String title, String author, String body) {
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.TITLE, title);
+        values.put(ItemsContract.Items.AUTHOR, author);
+        values.put(ItemsContract.Items.BODY, body);
+        values.put(ItemsContract.Items.THUMB_URL, "thumb");
+        values.put(ItemsContract.Items.PHOTO_URL, "photo");
+        return mDb.insertOrThrow(ItemsProvider.Tables.ITEMS, null, values);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.xyzreader.remote;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.URL;
+
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RemoteEndpointUtilTest {
+
+    private static final String ETAG = "\"feed-v1\"";
+    private static final String LAST_MODIFIED = "Sat, 17 Oct 2026 08:00:00 GMT";
+    private static final String FEED = "[]";
+
+    private Context mContext;
+    private MockWebServer mServer;
+    private URL mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = ApplicationProvider.getApplicationContext();
+        RemoteEndpointUtil.clearValidators(mContext);
+        mServer = new MockWebServer();
+        mServer.start();
+        mUrl = mServer.url("/feed").url();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void storedValidatorsAreSentBack() throws Exception {
+        mServer.enqueue(feedResponse());
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        final Response first = RemoteEndpointUtil.fetchFeed(mContext, mUrl);
+        assertEquals(FEED, first.body().string());
+        RemoteEndpointUtil.saveValidators(mContext, first);
+        RemoteEndpointUtil.fetchFeed(mContext, mUrl).body().close();
+
+        final RecordedRequest unconditional = mServer.takeRequest();
+        assertNull(unconditional.getHeader("If-None-Match"));
+        assertNull(unconditional.getHeader("If-Modified-Since"));
+        final RecordedRequest conditional = mServer.takeRequest();
+        assertEquals(ETAG, conditional.getHeader("If-None-Match"));
+        assertEquals(LAST_MODIFIED, conditional.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void notModifiedIsHandedBackInsteadOfTheCachedFeed() throws Exception {
+        mServer.enqueue(feedResponse());
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        final Response first = RemoteEndpointUtil.fetchFeed(mContext, mUrl);
+        first.body().string();
+        RemoteEndpointUtil.saveValidators(mContext, first);
+
+        // Had OkHttp answered from its cache, this would be the 200 and be parsed again.
+        final Response second = RemoteEndpointUtil.fetchFeed(mContext, mUrl);
+        try {
+            assertTrue(RemoteEndpointUtil.isNotModified(second));
+            assertFalse(second.isSuccessful());
+        } finally {
+            second.body().close();
+        }
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void serverErrorThrows() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        try {
+            RemoteEndpointUtil.fetchFeed(mContext, mUrl);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static MockResponse feedResponse() {
+        return new MockResponse()
+                .setHeader("ETag", ETAG)
+                .setHeader("Last-Modified", LAST_MODIFIED)
+                .setBody(FEED);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.xyzreader.ui;
+
+import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
+import android.text.Html;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ImageSpan;
+import android.text.style.StyleSpan;
+import android.text.style.URLSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SpanCodecTest {
+
+    @Test
+    public void renderedArticleMarkupRoundTrips() throws IOException {
+        final Spanned rendered = Html.fromHtml("Plain <b>bold</b>, <i>italic</i> and a "
+                + "<a href=\"https://example.com/a?b=c\">link</a> &#8217;quoted&#8217;.");
+        final byte[] encoded = SpanCodec.encode(rendered);
+        final Spanned decoded = (Spanned) SpanCodec.decode(encoded);
+
+        assertEquals(rendered.toString(), decoded.toString());
+        assertEquals(describe(rendered), describe(decoded));
+        // Encoding is stable, so the same text always maps to the same bytes.
+        assertArrayEquals(encoded, SpanCodec.encode(decoded));
+    }
+
+    @Test
+    public void spanValuesSurvive() throws IOException {
+        final SpannableString text = new SpannableString("bold link");
+        text.setSpan(new StyleSpan(Typeface.BOLD), 0, 4, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        text.setSpan(new URLSpan("https://example.com"), 5, 9, Spanned.SPAN_INCLUSIVE_EXCLUSIVE);
+        final Spanned decoded = (Spanned) SpanCodec.decode(SpanCodec.encode(text));
+
+        final StyleSpan style = decoded.getSpans(0, decoded.length(), StyleSpan.class)[0];
+        assertEquals(Typeface.BOLD, style.getStyle());
+        final URLSpan url = decoded.getSpans(0, decoded.length(), URLSpan.class)[0];
+        assertEquals("https://example.com", url.getURL());
+        assertEquals(5, decoded.getSpanStart(url));
+        assertEquals(9, decoded.getSpanEnd(url));
+        assertEquals(Spanned.SPAN_INCLUSIVE_EXCLUSIVE, decoded.getSpanFlags(url));
+    }
+
+    @Test
+    public void unsupportedSpansAreNotEncoded() {
+        final SpannableString text = new SpannableString("x");
+        text.setSpan(new ImageSpan(new ColorDrawable()), 0, 1,
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        assertNull(SpanCodec.encode(text));
+    }
+
+    @Test
+    public void corruptDataIsRejected() {
+        final byte[] encoded = SpanCodec.encode(Html.fromHtml("<b>bold</b>"));
+        assertRejected(Arrays.copyOf(encoded, encoded.length - 3));
+        final byte[] otherVersion = encoded.clone();
+        otherVersion[3]++;
+        assertRejected(otherVersion);
+    }
+
+    @Test
+    public void plainTextPlaceholderDecodesEntitiesAndKeepsBreaks() {
+        assertEquals("Tom & Jerry\u2019s\nnext\u00a0line <x>",
+                HtmlSpanCache.toPlainText(
+                        "<p>Tom &amp; Jerry&#8217;s<br>next&nbsp;line &lt;x&gt;</p>").trim());
+        assertEquals("&unknown;", HtmlSpanCache.toPlainText("&unknown;"));
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            SpanCodec.decode(data);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static String describe(Spanned text) {
+        final StringBuilder sb = new StringBuilder();
+        for (Object span : text.getSpans(0, text.length(), Object.class)) {
+            sb.append(span.getClass().getSimpleName()).append(' ')
+                    .append(text.getSpanStart(span)).append('-').append(text.getSpanEnd(span))
+                    .append(' ').append(text.getSpanFlags(span)).append('\n');
+        }
+        return sb.toString();
+    }
+}